@@ -0,0 +1,44 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.cache;
+
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+/**
+ * 查询结果缓存
+ */
+public interface ResultCache {
+
+    /**
+     * 读取缓存，未命中时通过 loader 加载；同一 key 的并发加载只执行一次
+     *
+     * @param key       缓存 key
+     * @param expired   过期时间（秒）
+     * @param flush     是否跳过读缓存
+     * @param loader    加载器
+     * @param cacheable 加载结果是否写入缓存
+     * @return
+     * @throws Exception loader 抛出的异常
+     */
+    <T> T get(String key, long expired, boolean flush, Callable<T> loader, Predicate<T> cacheable) throws Exception;
+
+    void evict(String key);
+}
@@ -0,0 +1,276 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import edp.core.common.jdbc.QueryCancelRegistry;
+import edp.core.model.ColumnarResultList;
+import edp.core.model.Paginate;
+import edp.core.model.PaginateWithQueryColumns;
+import edp.core.utils.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.SQLTimeoutException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * 两级查询结果缓存：本地堆内 L1（按估算大小限制容量、按过期时间淘汰）+ Redis L2
+ * 同一 key 的并发未命中只触发一次加载，其余请求等待同一结果；加载者的请求被取消或超时时由等待者重新加载
+ * 缓存的分页结果为可变对象，存入及取出时都复制一份，调用方修改返回值不影响缓存
+ */
+@Slf4j
+@Component
+public class TwoTierResultCache implements ResultCache {
+
+    /**
+     * 估算每个单元格占用的字节数
+     */
+    private static final int BYTES_PER_CELL = 32;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Value("${cache.local.enable:true}")
+    private boolean localEnable;
+
+    @Value("${cache.local.max-size-mb:256}")
+    private long localMaxSizeMb;
+
+    @Value("${cache.local.max-expire-seconds:3600}")
+    private long localMaxExpireSeconds;
+
+    private Cache<String, CacheEntry> localCache;
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> loadings = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localCache = CacheBuilder.newBuilder()
+                .maximumWeight(localMaxSizeMb * 1024)
+                .weigher((Weigher<String, CacheEntry>) (key, entry) -> entry.weight)
+                .expireAfterWrite(localMaxExpireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, long expired, boolean flush, Callable<T> loader, Predicate<T> cacheable) throws Exception {
+
+        if (!flush) {
+            Object value = getIfPresent(key, expired);
+            if (null != value) {
+                return (T) copyOf(value);
+            }
+        }
+
+        while (true) {
+            CompletableFuture<Object> loading = new CompletableFuture<>();
+            CompletableFuture<Object> existing = loadings.putIfAbsent(key, loading);
+            if (null != existing) {
+                try {
+                    return (T) copyOf(existing.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof LoaderAbortedException) {
+                        // 加载者自身的请求被取消或超时，与等待者无关，重新竞争加载
+                        continue;
+                    }
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+
+            try {
+                if (!flush) {
+                    // 未命中到登记加载之间，其他请求可能刚完成加载
+                    Object value = getIfPresent(key, expired);
+                    if (null != value) {
+                        loading.complete(value);
+                        return (T) copyOf(value);
+                    }
+                }
+                T value = loader.call();
+                if (null != value && cacheable.test(value)) {
+                    put(key, copyOf(value), expired);
+                }
+                loading.complete(null == value ? null : copyOf(value));
+                return value;
+            } catch (Exception e) {
+                loading.completeExceptionally(isAborted(e) ? new LoaderAbortedException(e) : e);
+                throw e;
+            } finally {
+                loadings.remove(key, loading);
+            }
+        }
+    }
+
+    @Override
+    public void evict(String key) {
+        if (localEnable) {
+            localCache.invalidate(key);
+        }
+        redisUtils.delete(key);
+    }
+
+    private Object getIfPresent(String key, long expired) {
+        if (localEnable) {
+            CacheEntry entry = localCache.getIfPresent(key);
+            if (null != entry) {
+                if (entry.expireAt > System.currentTimeMillis()) {
+                    return entry.value;
+                }
+                localCache.invalidate(key);
+            }
+        }
+
+        try {
+            Object value = redisUtils.get(key);
+            if (null != value) {
+                // L1 不能比 L2 晚过期，按 redis 剩余时间写入
+                Long ttl = redisUtils.getExpire(key);
+                long localExpired = null != ttl && ttl >= 0 ? Math.min(ttl, expired) : expired;
+                if (localExpired > 0) {
+                    putLocal(key, value, localExpired);
+                }
+                return value;
+            }
+        } catch (Exception e) {
+            log.warn("Get data by cache error, {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private void put(String key, Object value, long expired) {
+        putLocal(key, value, expired);
+        try {
+            redisUtils.set(key, value, expired, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Set data to cache error, {}", e.getMessage());
+        }
+    }
+
+    private void putLocal(String key, Object value, long expired) {
+        if (!localEnable) {
+            return;
+        }
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.min(expired, localMaxExpireSeconds));
+        localCache.put(key, new CacheEntry(value, expireAt, weigh(value)));
+    }
+
+    /**
+     * 加载失败是否由加载者所在请求被取消或超时引起
+     */
+    private static boolean isAborted(Exception e) {
+        QueryCancelRegistry.QueryScope scope = QueryCancelRegistry.current();
+        if (null != scope && (scope.isCancelled() || scope.isExpired())) {
+            return true;
+        }
+        for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 复制分页结果的外层对象；列式结果集的行在访问时生成，可共享，其余结果集逐行复制
+     */
+    private static Object copyOf(Object value) {
+        if (!(value instanceof PaginateWithQueryColumns)) {
+            return value;
+        }
+        PaginateWithQueryColumns source = (PaginateWithQueryColumns) value;
+        PaginateWithQueryColumns copy = new PaginateWithQueryColumns();
+        copy.setPageNo(source.getPageNo());
+        copy.setPageSize(source.getPageSize());
+        copy.setTotalCount(source.getTotalCount());
+        copy.setCountApproximate(source.isCountApproximate());
+        copy.setColumns(null == source.getColumns() ? null : new ArrayList<>(source.getColumns()));
+        List<Map<String, Object>> resultList = source.getResultList();
+        if (null == resultList || resultList instanceof ColumnarResultList) {
+            copy.setResultList(resultList);
+        } else {
+            List<Map<String, Object>> rows = new ArrayList<>(resultList.size());
+            for (Map<String, Object> row : resultList) {
+                rows.add(null == row ? null : new LinkedHashMap<>(row));
+            }
+            copy.setResultList(rows);
+        }
+        return copy;
+    }
+
+    /**
+     * 按行数 * 列数估算占用（KB）
+     */
+    private static int weigh(Object value) {
+        long rows = 1L;
+        long columns = 1L;
+        if (value instanceof Paginate) {
+            List<?> resultList = ((Paginate<?>) value).getResultList();
+            rows = null == resultList ? 0L : resultList.size();
+            if (value instanceof PaginateWithQueryColumns && null != ((PaginateWithQueryColumns) value).getColumns()) {
+                columns = ((PaginateWithQueryColumns) value).getColumns().size();
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            rows = collection.size();
+            Object first = collection.isEmpty() ? null : collection.iterator().next();
+            if (first instanceof Map) {
+                columns = ((Map<?, ?>) first).size();
+            }
+        }
+        long kb = rows * Math.max(columns, 1L) * BYTES_PER_CELL / 1024 + 1;
+        return (int) Math.min(kb, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 加载者的请求被取消或超时，等待者应重新加载而不是共享该异常
+     */
+    private static final class LoaderAbortedException extends Exception {
+
+        private LoaderAbortedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final Object value;
+
+        private final long expireAt;
+
+        private final int weight;
+
+        private CacheEntry(Object value, long expireAt, int weight) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.weight = weight;
+        }
+    }
+}
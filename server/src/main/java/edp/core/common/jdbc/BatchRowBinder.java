@@ -0,0 +1,150 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.jdbc;
+
+import edp.core.exception.ServerException;
+import edp.core.model.QueryColumn;
+import edp.core.utils.DateUtils;
+import edp.davinci.core.enums.SqlColumnEnum;
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+import static edp.core.consts.Consts.EMPTY;
+
+/**
+ * 批量插入的行绑定器
+ * <p>
+ * 按表头预先解析每列的 Java 类型及对应的 setter，绑定时不再逐单元格解析类型字符串；
+ * 数值类型的值已是 Number 时直接绑定，只有字符串才会解析
+ */
+public class BatchRowBinder {
+
+    private final String[] names;
+
+    private final ColumnBinder[] binders;
+
+    private BatchRowBinder(String[] names, ColumnBinder[] binders) {
+        this.names = names;
+        this.binders = binders;
+    }
+
+    public static BatchRowBinder of(Collection<QueryColumn> headers) throws ServerException {
+        String[] names = new String[headers.size()];
+        ColumnBinder[] binders = new ColumnBinder[headers.size()];
+        int i = 0;
+        for (QueryColumn queryColumn : headers) {
+            names[i] = queryColumn.getName();
+            binders[i] = binderOf(SqlColumnEnum.toJavaType(queryColumn.getType()));
+            i++;
+        }
+        return new BatchRowBinder(names, binders);
+    }
+
+    /**
+     * 绑定一行参数，参数下标从 1 开始按表头顺序排列
+     *
+     * @param pstmt
+     * @param row
+     * @throws Exception
+     */
+    public void bind(PreparedStatement pstmt, Map<String, Object> row) throws Exception {
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].bind(pstmt, i + 1, row.get(names[i]));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnBinder {
+        void bind(PreparedStatement pstmt, int index, Object obj) throws Exception;
+    }
+
+    private static ColumnBinder binderOf(String javaType) {
+        if (null == javaType) {
+            return PreparedStatement::setObject;
+        }
+
+        switch (javaType) {
+            case "Short":
+                return (pstmt, i, obj) -> pstmt.setShort(i, isEmpty(obj) ? (short) 0
+                        : obj instanceof Number ? ((Number) obj).shortValue() : Short.parseShort(trim(obj)));
+            case "Integer":
+                return (pstmt, i, obj) -> pstmt.setInt(i, isEmpty(obj) ? 0
+                        : obj instanceof Number ? ((Number) obj).intValue() : Integer.parseInt(trim(obj)));
+            case "Long":
+                return (pstmt, i, obj) -> pstmt.setLong(i, isEmpty(obj) ? 0L
+                        : obj instanceof Number ? ((Number) obj).longValue() : Long.parseLong(trim(obj)));
+            case "BigDecimal":
+                return (pstmt, i, obj) -> pstmt.setBigDecimal(i, isEmpty(obj) ? null
+                        : obj instanceof BigDecimal ? (BigDecimal) obj : new BigDecimal(trim(obj)));
+            case "Float":
+                return (pstmt, i, obj) -> pstmt.setFloat(i, isEmpty(obj) ? 0.0F
+                        : obj instanceof Number ? ((Number) obj).floatValue() : Float.parseFloat(trim(obj)));
+            case "Double":
+                return (pstmt, i, obj) -> pstmt.setDouble(i, isEmpty(obj) ? 0.0D
+                        : obj instanceof Number ? ((Number) obj).doubleValue() : Double.parseDouble(trim(obj)));
+            case "String":
+                return (pstmt, i, obj) -> pstmt.setString(i, null == obj ? null : obj.toString());
+            case "Boolean":
+                return (pstmt, i, obj) -> pstmt.setBoolean(i, null != obj
+                        && (obj instanceof Boolean ? (Boolean) obj : Boolean.parseBoolean(trim(obj))));
+            case "Bytes":
+                return (pstmt, i, obj) -> pstmt.setBytes(i, (byte[]) obj);
+            case "Date":
+                return (pstmt, i, obj) -> pstmt.setDate(i, null == obj ? null : DateUtils.toSqlDate((java.util.Date) obj));
+            case "DateTime":
+                return (pstmt, i, obj) -> {
+                    if (null == obj) {
+                        pstmt.setTimestamp(i, null);
+                    } else if (obj instanceof LocalDateTime) {
+                        pstmt.setTimestamp(i, Timestamp.valueOf((LocalDateTime) obj));
+                    } else {
+                        pstmt.setTimestamp(i, DateUtils.toTimestamp((DateTime) obj));
+                    }
+                };
+            case "Timestamp":
+                return (pstmt, i, obj) -> {
+                    if (obj instanceof LocalDateTime) {
+                        pstmt.setTimestamp(i, Timestamp.valueOf((LocalDateTime) obj));
+                    } else {
+                        pstmt.setTimestamp(i, (Timestamp) obj);
+                    }
+                };
+            case "Blob":
+                return (pstmt, i, obj) -> pstmt.setBlob(i, (Blob) obj);
+            case "Clob":
+                return (pstmt, i, obj) -> pstmt.setClob(i, (Clob) obj);
+            default:
+                return PreparedStatement::setObject;
+        }
+    }
+
+    private static boolean isEmpty(Object obj) {
+        return null == obj || (obj instanceof String && EMPTY.equals(obj));
+    }
+
+    private static String trim(Object obj) {
+        return String.valueOf(obj).trim();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.jdbc;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 带查询超时及取消登记的 JdbcTemplate
+ * 不使用 JdbcTemplate 自身的 queryTimeout，部分驱动（如 hive）不支持 setQueryTimeout 会直接抛错，此处忽略并交由看门狗兜底
+ */
+public class CancellableJdbcTemplate extends JdbcTemplate {
+
+    private final int timeoutSeconds;
+
+    public CancellableJdbcTemplate(DataSource dataSource, int timeoutSeconds) {
+        super(dataSource);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        int timeout = QueryCancelRegistry.effectiveTimeout(timeoutSeconds);
+        if (timeout > 0) {
+            try {
+                stmt.setQueryTimeout(timeout);
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+        QueryCancelRegistry.track(stmt, timeout);
+    }
+}
@@ -43,6 +43,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
@@ -160,6 +161,10 @@ public class JdbcDataSource {
     @Getter
     protected String filters;
 
+    @Value("${source.mysql.rewrite-batched-statements:false}")
+    @Getter
+    protected boolean mysqlRewriteBatchedStatements;
+
     private static volatile Map<String, DruidDataSource> dataSourceMap = new ConcurrentHashMap<>();
     private static volatile Map<String, Lock> dataSourceLockMap = new ConcurrentHashMap<>();
     private static final Object lockLock = new Object();
@@ -211,6 +216,41 @@ public class JdbcDataSource {
         }
     }
 
+    /**
+     * 获取连接池状态，连接池尚未建立时返回 null，不会创建连接池
+     * 连接有效性由 Druid 空闲检测保证，查询路径不再逐次探测连接
+     *
+     * @param jdbcSourceInfo
+     * @return
+     */
+    public Map<String, Object> getPoolStats(JdbcSourceInfo jdbcSourceInfo) {
+        DruidDataSource druidDataSource = dataSourceMap.get(getDataSourceKey(jdbcSourceInfo));
+        if (null == druidDataSource) {
+            return null;
+        }
+
+        int active = druidDataSource.getActiveCount();
+        int idle = druidDataSource.getPoolingCount();
+        Throwable lastCreateError = druidDataSource.getLastCreateError();
+        boolean up = !druidDataSource.isClosed() && (null == lastCreateError || active + idle > 0);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("status", up ? "UP" : "DOWN");
+        stats.put("closed", druidDataSource.isClosed());
+        stats.put("active", active);
+        stats.put("idle", idle);
+        stats.put("maxActive", druidDataSource.getMaxActive());
+        stats.put("waitThreads", druidDataSource.getWaitThreadCount());
+        stats.put("waitCount", druidDataSource.getNotEmptyWaitCount());
+        stats.put("createErrors", druidDataSource.getCreateErrorCount());
+        stats.put("discards", druidDataSource.getDiscardCount());
+        if (null != lastCreateError) {
+            stats.put("lastCreateError", lastCreateError.getMessage());
+            stats.put("lastCreateErrorTime", druidDataSource.getLastCreateErrorTimeMillis());
+        }
+        return stats;
+    }
+
     public DruidDataSource getDataSource(JdbcSourceInfo jdbcSourceInfo) throws SourceException {
 
         String name = jdbcSourceInfo.getName();
@@ -224,7 +264,7 @@ public class JdbcDataSource {
         String key = getDataSourceKey(jdbcSourceInfo);
 
 		DruidDataSource druidDataSource = dataSourceMap.get(key);
-		if (druidDataSource != null && !druidDataSource.isClosed()) {
+		if (druidDataSource != null && !druidDataSource.isClosed() && !isBroken(druidDataSource)) {
 			return druidDataSource;
 		}
         
@@ -233,7 +273,7 @@ public class JdbcDataSource {
         try {
             if (!lock.tryLock(30L, TimeUnit.SECONDS)) {
                 druidDataSource = dataSourceMap.get(key);
-                if (druidDataSource != null && !druidDataSource.isClosed()) {
+                if (druidDataSource != null && !druidDataSource.isClosed() && !isBroken(druidDataSource)) {
                     return druidDataSource;
                 }
                 throw new SourceException("Unable to get datasource for jdbcUrl: " + jdbcUrl);
@@ -245,8 +285,14 @@ public class JdbcDataSource {
         
 		druidDataSource = dataSourceMap.get(key);
 		if (druidDataSource != null && !druidDataSource.isClosed()) {
-            lock.unlock();
-			return druidDataSource;
+            if (!isBroken(druidDataSource)) {
+                lock.unlock();
+                return druidDataSource;
+            }
+            // 建连失败后 Druid 已停止补充连接，关闭旧连接池后重建
+            log.warn("Datasource {} is broken after acquire failure, rebuild it", name);
+            dataSourceMap.remove(key);
+            druidDataSource.close();
 		}
         
         druidDataSource = new DruidDataSource();
@@ -330,6 +376,10 @@ public class JdbcDataSource {
             Properties properties = new Properties();
             if (driverName.indexOf("mysql") != -1) {
                 properties.setProperty("druid.mysql.usePingMethod", "false");
+                // 批量插入改写为多值 insert，可被 source 自定义属性覆盖
+                if (mysqlRewriteBatchedStatements) {
+                    properties.setProperty("rewriteBatchedStatements", "true");
+                }
             }
 
             if (!CollectionUtils.isEmpty(jdbcSourceInfo.getProperties())) {
@@ -355,6 +405,12 @@ public class JdbcDataSource {
                         continue;
                     }
 
+                    // 由 SqlUtils 使用，不传给驱动
+                    if ("davinci.query-timeout".equalsIgnoreCase(dict.getKey())
+                            || "davinci.pagination".equalsIgnoreCase(dict.getKey())) {
+                        continue;
+                    }
+
                     properties.setProperty(dict.getKey(), dict.getValue());
                 }
             }
@@ -384,6 +440,19 @@ public class JdbcDataSource {
         return druidDataSource;
     }
     
+    /**
+     * breakAfterAcquireFailure 开启时，数据库中断期间建连失败会使 Druid 停止创建连接，
+     * 连接池未关闭但已无连接可用，需要重建
+     *
+     * @param druidDataSource
+     * @return
+     */
+    public static boolean isBroken(DruidDataSource druidDataSource) {
+        return druidDataSource.isBreakAfterAcquireFailure()
+                && null != druidDataSource.getLastCreateError()
+                && druidDataSource.getActiveCount() + druidDataSource.getPoolingCount() == 0;
+    }
+
     private String getDataSourceKey (JdbcSourceInfo jdbcSourceInfo) {
         return SourceUtils.getKey(jdbcSourceInfo.getName(),
                 jdbcSourceInfo.getJdbcUrl(),
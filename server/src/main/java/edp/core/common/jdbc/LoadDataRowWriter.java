@@ -0,0 +1,150 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.jdbc;
+
+import edp.core.exception.ServerException;
+import edp.core.model.QueryColumn;
+import edp.core.utils.DateUtils;
+import edp.davinci.core.enums.SqlColumnEnum;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+import static edp.core.consts.Consts.EMPTY;
+
+/**
+ * 将行数据写为 MySQL LOAD DATA 默认文本格式（制表符分隔、换行结束、反斜杠转义、\N 表示 NULL）
+ * <p>
+ * 空值的处理与 BatchRowBinder 一致：数值列写 0，布尔列写 false
+ */
+public class LoadDataRowWriter {
+
+    private static final String NULL = "\\N";
+
+    private final String[] names;
+
+    private final String[] javaTypes;
+
+    public LoadDataRowWriter(Collection<QueryColumn> headers) throws ServerException {
+        this.names = new String[headers.size()];
+        this.javaTypes = new String[headers.size()];
+        int i = 0;
+        for (QueryColumn queryColumn : headers) {
+            names[i] = queryColumn.getName();
+            javaTypes[i] = SqlColumnEnum.toJavaType(queryColumn.getType());
+            i++;
+        }
+    }
+
+    public void write(Writer writer, Map<String, Object> row) throws Exception {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                writer.write('\t');
+            }
+            writeValue(writer, javaTypes[i], row.get(names[i]));
+        }
+        writer.write('\n');
+    }
+
+    private static void writeValue(Writer writer, String javaType, Object obj) throws Exception {
+        if (null == javaType) {
+            writeText(writer, null == obj ? null : obj.toString());
+            return;
+        }
+
+        boolean empty = null == obj || (obj instanceof String && EMPTY.equals(obj));
+        switch (javaType) {
+            case "Short":
+            case "Integer":
+            case "Long":
+            case "Float":
+            case "Double":
+                writer.write(empty ? "0" : String.valueOf(obj).trim());
+                break;
+            case "BigDecimal":
+                if (empty) {
+                    writer.write(NULL);
+                } else {
+                    writer.write(obj instanceof BigDecimal ? ((BigDecimal) obj).toPlainString() : String.valueOf(obj).trim());
+                }
+                break;
+            case "Boolean":
+                boolean value = null != obj && (obj instanceof Boolean ? (Boolean) obj : Boolean.parseBoolean(String.valueOf(obj).trim()));
+                writer.write(value ? "1" : "0");
+                break;
+            case "Bytes":
+                writeText(writer, null == obj ? null : new String((byte[]) obj, StandardCharsets.UTF_8));
+                break;
+            case "Date":
+                writeText(writer, null == obj ? null : DateUtils.toSqlDate((java.util.Date) obj).toString());
+                break;
+            case "DateTime":
+            case "Timestamp":
+                if (null == obj) {
+                    writer.write(NULL);
+                } else if (obj instanceof LocalDateTime) {
+                    writer.write(Timestamp.valueOf((LocalDateTime) obj).toString());
+                } else if (obj instanceof DateTime) {
+                    writer.write(DateUtils.toTimestamp((DateTime) obj).toString());
+                } else {
+                    writeText(writer, obj.toString());
+                }
+                break;
+            default:
+                writeText(writer, null == obj ? null : obj.toString());
+        }
+    }
+
+    private static void writeText(Writer writer, String value) throws IOException {
+        if (null == value) {
+            writer.write(NULL);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\0':
+                    writer.write("\\0");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+}
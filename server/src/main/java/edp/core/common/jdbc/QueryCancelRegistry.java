@@ -0,0 +1,345 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.jdbc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static edp.core.consts.Consts.AT_SYMBOL;
+
+/**
+ * 查询超时与取消登记
+ * <p>
+ * 请求线程通过 open 建立查询范围（可带请求 ID 及请求级超时），范围内创建的 Statement 都会登记在此；
+ * 按请求 ID 取消时对其全部 Statement 调用 cancel()；请求 ID 由客户端指定，按发起者隔离，同一发起者的同一 ID 可对应多个请求，取消时一并取消。
+ * 看门狗线程定期检查登记的 Statement，超过超时时间（另加宽限）仍未结束的直接 cancel，
+ * 用于不支持或不严格执行 setQueryTimeout 的驱动
+ */
+@Slf4j
+public final class QueryCancelRegistry {
+
+    private static final long WATCHDOG_INTERVAL_MILLIS = 1000L;
+
+    private static final long WATCHDOG_GRACE_MILLIS = 5000L;
+
+    private static final ThreadLocal<QueryScope> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 发起者@请求 ID -> 查询范围
+     */
+    private static final Map<String, List<QueryScope>> SCOPES = new ConcurrentHashMap<>();
+
+    private static final Set<TrackedStatement> STATEMENTS = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("query-watchdog-%d").setDaemon(true).build());
+
+    static {
+        WATCHDOG.scheduleWithFixedDelay(QueryCancelRegistry::watch, WATCHDOG_INTERVAL_MILLIS, WATCHDOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private QueryCancelRegistry() {
+    }
+
+    /**
+     * 在当前线程建立查询范围，需在 finally 中 close
+     *
+     * @param requestId      请求 ID，为空时不能按 ID 取消
+     * @param owner          发起者，为空时不能按 ID 取消
+     * @param timeoutSeconds 请求级超时，小于等于 0 表示不限制
+     * @return
+     */
+    public static QueryScope open(String requestId, String owner, int timeoutSeconds) {
+        QueryScope scope = new QueryScope(requestId, owner, timeoutSeconds);
+        CURRENT.set(scope);
+        if (null != requestId && null != owner) {
+            SCOPES.compute(getScopeKey(requestId, owner), (key, scopes) -> {
+                if (null == scopes) {
+                    scopes = new CopyOnWriteArrayList<>();
+                }
+                scopes.add(scope);
+                return scopes;
+            });
+        }
+        return scope;
+    }
+
+    public static QueryScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将当前线程的查询范围传递到其他线程执行的任务，使其受同一超时及取消控制
+     *
+     * @param task
+     * @param <T>
+     * @return
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        return propagate(CURRENT.get(), task);
+    }
+
+    /**
+     * 在指定查询范围内执行任务
+     *
+     * @param scope
+     * @param task
+     * @param <T>
+     * @return
+     */
+    public static <T> Callable<T> propagate(QueryScope scope, Callable<T> task) {
+        if (null == scope) {
+            return task;
+        }
+        return () -> {
+            QueryScope previous = CURRENT.get();
+            CURRENT.set(scope);
+            try {
+                return task.call();
+            } finally {
+                if (null == previous) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * 为在其他线程执行的附属查询（如并发统计总数）创建子范围：沿用当前请求的发起者及截止时间，
+     * 请求被取消时一并取消，也可单独取消；需在 finally 中 close
+     *
+     * @return
+     */
+    public static QueryScope fork() {
+        QueryScope parent = CURRENT.get();
+        if (null == parent) {
+            return new QueryScope(null, null, 0L, null);
+        }
+        QueryScope child = new QueryScope(null, parent.owner, parent.deadline, parent);
+        parent.children.add(child);
+        if (parent.cancelled) {
+            child.cancelled = true;
+        }
+        return child;
+    }
+
+    /**
+     * 综合数据源超时与当前请求剩余时间，返回 Statement 应使用的超时秒数，0 表示不限制
+     *
+     * @param sourceTimeoutSeconds
+     * @return
+     */
+    public static int effectiveTimeout(int sourceTimeoutSeconds) {
+        int timeout = Math.max(0, sourceTimeoutSeconds);
+        QueryScope scope = CURRENT.get();
+        if (null != scope && scope.deadline > 0) {
+            long remaining = scope.deadline - System.currentTimeMillis();
+            int remainingSeconds = (int) Math.max(1L, (remaining + 999L) / 1000L);
+            timeout = timeout > 0 ? Math.min(timeout, remainingSeconds) : remainingSeconds;
+        }
+        return timeout;
+    }
+
+    /**
+     * 登记新创建的 Statement
+     *
+     * @param statement
+     * @param timeoutSeconds
+     * @throws SQLException 所在请求已被取消
+     */
+    public static void track(Statement statement, int timeoutSeconds) throws SQLException {
+        QueryScope scope = CURRENT.get();
+        if (null == scope && timeoutSeconds <= 0) {
+            return;
+        }
+        if (null != scope && scope.cancelled) {
+            throw new SQLException("Query of request " + scope.requestId + " has been cancelled");
+        }
+
+        long deadline = timeoutSeconds > 0 ? System.currentTimeMillis() + timeoutSeconds * 1000L + WATCHDOG_GRACE_MILLIS : 0L;
+        TrackedStatement tracked = new TrackedStatement(statement, deadline);
+        STATEMENTS.add(tracked);
+        if (null != scope) {
+            scope.statements.add(tracked);
+        }
+    }
+
+    /**
+     * 取消发起者以指定请求 ID 发起的全部请求的查询
+     *
+     * @param requestId
+     * @param owner     需与发起者一致，无发起者（如分享页）的请求不能按 ID 取消
+     * @return 是否找到该请求
+     */
+    public static boolean cancel(String requestId, String owner) {
+        if (null == requestId || null == owner) {
+            return false;
+        }
+        List<QueryScope> scopes = SCOPES.get(getScopeKey(requestId, owner));
+        if (null == scopes || scopes.isEmpty()) {
+            return false;
+        }
+        for (QueryScope scope : scopes) {
+            scope.cancel("cancelled by client");
+        }
+        return true;
+    }
+
+    private static String getScopeKey(String requestId, String owner) {
+        return owner + AT_SYMBOL + requestId;
+    }
+
+    /**
+     * 取消当前线程范围内的查询，用于结果写出失败（客户端已断开）时尽快释放连接
+     */
+    public static void cancelCurrent(String reason) {
+        QueryScope scope = CURRENT.get();
+        if (null != scope) {
+            scope.cancel(reason);
+        }
+    }
+
+    private static void watch() {
+        long now = System.currentTimeMillis();
+        for (TrackedStatement tracked : STATEMENTS) {
+            try {
+                if (tracked.statement.isClosed()) {
+                    STATEMENTS.remove(tracked);
+                } else if (tracked.deadline > 0 && now > tracked.deadline) {
+                    STATEMENTS.remove(tracked);
+                    log.warn("Query exceeded its timeout, cancel statement");
+                    tracked.cancel();
+                }
+            } catch (Throwable e) {
+                STATEMENTS.remove(tracked);
+            }
+        }
+    }
+
+    public static final class QueryScope implements AutoCloseable {
+
+        private final String requestId;
+
+        private final String owner;
+
+        private final long deadline;
+
+        private final QueryScope parent;
+
+        private final List<TrackedStatement> statements = new CopyOnWriteArrayList<>();
+
+        private final List<QueryScope> children = new CopyOnWriteArrayList<>();
+
+        private volatile boolean cancelled = false;
+
+        private QueryScope(String requestId, String owner, int timeoutSeconds) {
+            this(requestId, owner, timeoutSeconds > 0 ? System.currentTimeMillis() + timeoutSeconds * 1000L : 0L, null);
+        }
+
+        private QueryScope(String requestId, String owner, long deadline, QueryScope parent) {
+            this.requestId = requestId;
+            this.owner = owner;
+            this.deadline = deadline;
+            this.parent = parent;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 是否已超过请求级截止时间
+         *
+         * @return
+         */
+        public boolean isExpired() {
+            return deadline > 0 && System.currentTimeMillis() >= deadline;
+        }
+
+        /**
+         * 取消本范围及子范围内的全部查询
+         *
+         * @param reason
+         */
+        public void cancel(String reason) {
+            cancelled = true;
+            log.info("Cancel queries of request {}: {}", requestId, reason);
+            for (TrackedStatement tracked : statements) {
+                tracked.cancel();
+            }
+            for (QueryScope child : children) {
+                child.cancel(reason);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+            if (null != requestId && null != owner) {
+                SCOPES.computeIfPresent(getScopeKey(requestId, owner), (key, scopes) -> {
+                    scopes.remove(this);
+                    return scopes.isEmpty() ? null : scopes;
+                });
+            }
+            if (null != parent) {
+                parent.children.remove(this);
+            }
+            STATEMENTS.removeAll(statements);
+            statements.clear();
+        }
+    }
+
+    private static final class TrackedStatement {
+
+        private final Statement statement;
+
+        private final long deadline;
+
+        private TrackedStatement(Statement statement, long deadline) {
+            this.statement = statement;
+            this.deadline = deadline;
+        }
+
+        private void cancel() {
+            try {
+                if (!statement.isClosed()) {
+                    statement.cancel();
+                }
+            } catch (Throwable e) {
+                log.debug("Cancel statement error: {}", e.getMessage());
+            }
+        }
+    }
+}
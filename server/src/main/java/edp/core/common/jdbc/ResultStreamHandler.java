@@ -0,0 +1,59 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.common.jdbc;
+
+import edp.core.model.QueryColumn;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式读取结果集的回调，行数据不在内存中累积
+ */
+public interface ResultStreamHandler {
+
+    /**
+     * 读取第一行之前调用
+     *
+     * @param columns
+     * @throws IOException
+     */
+    void onColumns(List<QueryColumn> columns) throws IOException;
+
+    /**
+     * 每读取一行调用一次，row 为复用的缓冲区，回调返回后即被下一行覆盖
+     *
+     * @param row
+     * @throws IOException
+     */
+    void onRow(Map<String, Object> row) throws IOException;
+
+    /**
+     * 结果集读取完毕
+     *
+     * @param pageNo
+     * @param pageSize
+     * @param totalCount
+     * @param countApproximate totalCount 是否为估算值
+     * @throws IOException
+     */
+    void onComplete(int pageNo, int pageSize, long totalCount, boolean countApproximate) throws IOException;
+}
@@ -0,0 +1,51 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.enums;
+
+/**
+ * 分页查询统计总数的方式
+ * serial：先统计总数再查询分页；parallel：统计与分页查询使用两个连接并发执行；
+ * async：直接返回分页，总数在后台统计并缓存，统计完成前返回估算值
+ */
+public enum CountModeEnum {
+
+    SERIAL("serial"),
+    PARALLEL("parallel"),
+    ASYNC("async");
+
+    private String mode;
+
+    CountModeEnum(String mode) {
+        this.mode = mode;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public static CountModeEnum getCountMode(String mode) {
+        for (CountModeEnum countModeEnum : values()) {
+            if (countModeEnum.mode.equalsIgnoreCase(mode)) {
+                return countModeEnum;
+            }
+        }
+        return SERIAL;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.enums;
+
+/**
+ * 数据源默认的 NULL 排序位置，用于 keyset 分页补充 IS NULL 条件
+ * smallest：NULL 视为最小值（升序在前、降序在后）；largest：NULL 视为最大值；last：升降序均在最后
+ */
+public enum NullOrderingEnum {
+
+    SMALLEST {
+        @Override
+        public boolean isNullsAfter(boolean desc) {
+            return desc;
+        }
+    },
+
+    LARGEST {
+        @Override
+        public boolean isNullsAfter(boolean desc) {
+            return !desc;
+        }
+    },
+
+    LAST {
+        @Override
+        public boolean isNullsAfter(boolean desc) {
+            return true;
+        }
+    };
+
+    /**
+     * 按该方向排序时 NULL 是否排在非 NULL 值之后
+     *
+     * @param desc
+     * @return
+     */
+    public abstract boolean isNullsAfter(boolean desc);
+
+    /**
+     * 返回 null 表示未知，不能使用 keyset 分页
+     *
+     * @param dataTypeEnum
+     * @return
+     */
+    public static NullOrderingEnum getNullOrdering(DataTypeEnum dataTypeEnum) {
+        if (null == dataTypeEnum) {
+            return null;
+        }
+        switch (dataTypeEnum) {
+            case MYSQL:
+            case HIVE2:
+            case SQLSERVER:
+            case H2:
+            case MOONBOX:
+            case HANA:
+                return SMALLEST;
+            case ORACLE:
+            case IMPALA:
+                return LARGEST;
+            case PRESTO:
+            case CLICKHOUSE:
+                return LAST;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.enums;
+
+/**
+ * 分页 SQL 改写方式，由数据源类型决定，可通过 source 属性 davinci.pagination 或自定义数据源的 pagination 覆盖
+ * none 表示不改写，按 maxRows 读取后跳过前面的行
+ */
+public enum PaginationDialectEnum {
+
+    NONE("none") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            return null;
+        }
+    },
+
+    /**
+     * LIMIT rows OFFSET offset
+     */
+    LIMIT_OFFSET("limit_offset") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            return offset > 0 ? sql + " LIMIT " + rows + " OFFSET " + offset : sql + " LIMIT " + rows;
+        }
+    },
+
+    /**
+     * 只在有外层排序时使用 OFFSET（impala 不支持无 ORDER BY 的 OFFSET），否则首页 LIMIT、其余页不改写
+     */
+    ORDERED_LIMIT_OFFSET("ordered_limit_offset") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            if (offset == 0) {
+                return sql + " LIMIT " + rows;
+            }
+            return hasTopLevelOrderBy(sql) ? sql + " LIMIT " + rows + " OFFSET " + offset : null;
+        }
+    },
+
+    /**
+     * OFFSET offset LIMIT rows（presto、trino）
+     */
+    OFFSET_LIMIT("offset_limit") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            return offset > 0 ? sql + " OFFSET " + offset + " LIMIT " + rows : sql + " LIMIT " + rows;
+        }
+    },
+
+    /**
+     * LIMIT offset, rows（mysql、hive）
+     */
+    LIMIT_COMMA("limit_comma") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            return offset > 0 ? sql + " LIMIT " + offset + ", " + rows : sql + " LIMIT " + rows;
+        }
+    },
+
+    /**
+     * ANSI OFFSET ... FETCH（oracle 12c+、db2 等）
+     */
+    OFFSET_FETCH("offset_fetch") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            return offset > 0 ? sql + " OFFSET " + offset + " ROWS FETCH NEXT " + rows + " ROWS ONLY"
+                    : sql + " FETCH FIRST " + rows + " ROWS ONLY";
+        }
+    },
+
+    /**
+     * sqlserver：首页且无排序时使用 TOP，否则 OFFSET ... FETCH（2012+，要求 ORDER BY）
+     */
+    TOP("top") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            boolean ordered = hasTopLevelOrderBy(sql);
+            if (offset == 0 && !ordered) {
+                return "SELECT TOP " + rows + " * FROM (" + sql + ") DAVINCI_P";
+            }
+            return sql + (ordered ? "" : " ORDER BY (SELECT NULL)")
+                    + " OFFSET " + offset + " ROWS FETCH NEXT " + rows + " ROWS ONLY";
+        }
+    },
+
+    /**
+     * oracle ROWNUM 嵌套查询，保留内层排序，结果多出 DAVINCI_RN 列
+     */
+    ROWNUM("rownum") {
+        @Override
+        public String paginate(String sql, int offset, int rows) {
+            return "SELECT * FROM (SELECT DAVINCI_P.*, ROWNUM " + ROW_NUMBER_COLUMN + " FROM (" + sql + ") DAVINCI_P WHERE ROWNUM <= "
+                    + ((long) offset + rows) + ") WHERE " + ROW_NUMBER_COLUMN + " > " + offset;
+        }
+
+        @Override
+        public String getExtraColumn() {
+            return ROW_NUMBER_COLUMN;
+        }
+    };
+
+    private static final String ROW_NUMBER_COLUMN = "DAVINCI_RN";
+
+    private String dialect;
+
+    PaginationDialectEnum(String dialect) {
+        this.dialect = dialect;
+    }
+
+    public String getDialect() {
+        return dialect;
+    }
+
+    /**
+     * 改写为只返回 [offset, offset + rows) 行的 SQL，返回 null 表示不支持
+     *
+     * @param sql
+     * @param offset
+     * @param rows
+     * @return
+     */
+    public abstract String paginate(String sql, int offset, int rows);
+
+    /**
+     * 改写后额外产生的列，需从结果中排除
+     *
+     * @return
+     */
+    public String getExtraColumn() {
+        return null;
+    }
+
+    public static PaginationDialectEnum getPaginationDialect(String dialect) {
+        for (PaginationDialectEnum dialectEnum : values()) {
+            if (dialectEnum.dialect.equalsIgnoreCase(dialect.trim())) {
+                return dialectEnum;
+            }
+        }
+        return NONE;
+    }
+
+    public static PaginationDialectEnum getPaginationDialect(DataTypeEnum dataTypeEnum) {
+        if (null == dataTypeEnum) {
+            return NONE;
+        }
+        switch (dataTypeEnum) {
+            case MYSQL:
+            case HIVE2:
+                return LIMIT_COMMA;
+            case H2:
+            case PHOENIX:
+            case CLICKHOUSE:
+            case KYLIN:
+            case VERTICA:
+            case HANA:
+            case TDENGINE:
+                return LIMIT_OFFSET;
+            case IMPALA:
+                return ORDERED_LIMIT_OFFSET;
+            case PRESTO:
+                return OFFSET_LIMIT;
+            case ORACLE:
+                return ROWNUM;
+            case SQLSERVER:
+                return TOP;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * 是否有外层排序：括号外出现 ORDER BY（中间可为任意空白或注释），跳过字符串、引号标识符及注释
+     */
+    static boolean hasTopLevelOrderBy(String sql) {
+        int length = sql.length();
+        int depth = 0;
+        String lastWord = null;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+            if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                i = skipQuoted(sql, i, c == '[' ? ']' : c);
+                lastWord = null;
+            } else if (c == '-' && next == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '/' && next == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+                    i++;
+                }
+                String word = sql.substring(start, i);
+                if (depth == 0 && "by".equalsIgnoreCase(word) && "order".equalsIgnoreCase(lastWord)) {
+                    return true;
+                }
+                lastWord = word;
+            } else {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+                if (!Character.isWhitespace(c)) {
+                    lastWord = null;
+                }
+                i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回引号结束后的位置，连续两个结束引号视为转义
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+}
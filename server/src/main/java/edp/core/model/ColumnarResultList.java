@@ -0,0 +1,421 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * 列式结果集
+ * <p>
+ * 每列按首个非空值的类型选择存储：long/int/double 使用基本类型数组 + null 位图，
+ * 字符串使用字典编码，其余类型退化为 Object 数组。
+ * 对外仍表现为 List<Map<String, Object>>，行对象在访问时按需生成，序列化结果与原 LinkedHashMap 行一致。
+ */
+public class ColumnarResultList extends AbstractList<Map<String, Object>> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 4510528906414524413L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final String[] labels;
+
+    private final Map<String, Integer> slots;
+
+    private final ColumnVector[] vectors;
+
+    private int size;
+
+    public ColumnarResultList(List<String> labels) {
+        this.labels = labels.toArray(new String[0]);
+        this.slots = new HashMap<>(this.labels.length * 2);
+        this.vectors = new ColumnVector[this.labels.length];
+        for (int i = 0; i < this.labels.length; i++) {
+            this.slots.put(this.labels[i], i);
+            this.vectors[i] = new PendingVector();
+        }
+    }
+
+    /**
+     * 追加一行，values 按列槽位排列，调用方可复用同一数组
+     *
+     * @param values
+     */
+    public void appendRow(Object[] values) {
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = vectors[i].append(values[i]);
+        }
+        size++;
+    }
+
+    /**
+     * 写入结束后释放多余容量及字典索引
+     */
+    public void seal() {
+        for (ColumnVector vector : vectors) {
+            vector.trim();
+        }
+    }
+
+    public List<String> getLabels() {
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    public Object getValue(int row, int slot) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        }
+        return vectors[slot].get(row);
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Row(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private final class Row extends AbstractMap<String, Object> {
+
+        private final int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer slot = slots.get(key);
+            return null == slot ? null : vectors[slot].get(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return slots.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return labels.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int slot = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return slot < labels.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (slot >= labels.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int current = slot++;
+                            return new SimpleImmutableEntry<>(labels[current], vectors[current].get(row));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return labels.length;
+                }
+            };
+        }
+    }
+
+    private static int grow(int capacity) {
+        return capacity < DEFAULT_CAPACITY ? DEFAULT_CAPACITY : capacity + (capacity >> 1);
+    }
+
+    private abstract static class ColumnVector implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        int size;
+
+        /**
+         * 追加值，类型不兼容时返回提升后的新列
+         */
+        abstract ColumnVector append(Object value);
+
+        abstract Object get(int row);
+
+        void trim() {
+        }
+
+        ColumnVector promote(Object value) {
+            ObjectVector vector = new ObjectVector(Math.max(size + 1, DEFAULT_CAPACITY));
+            for (int i = 0; i < size; i++) {
+                vector.append(get(i));
+            }
+            return vector.append(value);
+        }
+    }
+
+    /**
+     * 尚未出现非空值的列，仅记录前导 null 的个数
+     */
+    private static final class PendingVector extends ColumnVector {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        ColumnVector append(Object value) {
+            if (null == value) {
+                size++;
+                return this;
+            }
+
+            ColumnVector vector;
+            if (value instanceof Long) {
+                vector = new LongVector();
+            } else if (value instanceof Integer) {
+                vector = new IntVector();
+            } else if (value instanceof Double) {
+                vector = new DoubleVector();
+            } else if (value instanceof String) {
+                vector = new StringVector();
+            } else {
+                vector = new ObjectVector(DEFAULT_CAPACITY);
+            }
+            for (int i = 0; i < size; i++) {
+                vector.append(null);
+            }
+            return vector.append(value);
+        }
+
+        @Override
+        Object get(int row) {
+            return null;
+        }
+    }
+
+    private static final class LongVector extends ColumnVector {
+
+        private static final long serialVersionUID = 1L;
+
+        private long[] values = new long[DEFAULT_CAPACITY];
+
+        private final BitSet nulls = new BitSet();
+
+        @Override
+        ColumnVector append(Object value) {
+            if (null != value && !(value instanceof Long)) {
+                return promote(value);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(size));
+            }
+            if (null == value) {
+                nulls.set(size);
+            } else {
+                values[size] = (Long) value;
+            }
+            size++;
+            return this;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class IntVector extends ColumnVector {
+
+        private static final long serialVersionUID = 1L;
+
+        private int[] values = new int[DEFAULT_CAPACITY];
+
+        private final BitSet nulls = new BitSet();
+
+        @Override
+        ColumnVector append(Object value) {
+            if (null != value && !(value instanceof Integer)) {
+                return promote(value);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(size));
+            }
+            if (null == value) {
+                nulls.set(size);
+            } else {
+                values[size] = (Integer) value;
+            }
+            size++;
+            return this;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DoubleVector extends ColumnVector {
+
+        private static final long serialVersionUID = 1L;
+
+        private double[] values = new double[DEFAULT_CAPACITY];
+
+        private final BitSet nulls = new BitSet();
+
+        @Override
+        ColumnVector append(Object value) {
+            if (null != value && !(value instanceof Double)) {
+                return promote(value);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(size));
+            }
+            if (null == value) {
+                nulls.set(size);
+            } else {
+                values[size] = (Double) value;
+            }
+            size++;
+            return this;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * 字典编码字符串列，code 为 -1 表示 null
+     */
+    private static final class StringVector extends ColumnVector {
+
+        private static final long serialVersionUID = 1L;
+
+        private int[] codes = new int[DEFAULT_CAPACITY];
+
+        private final ArrayList<String> dictionary = new ArrayList<>();
+
+        private transient Map<String, Integer> lookup = new HashMap<>();
+
+        @Override
+        ColumnVector append(Object value) {
+            if (null != value && !(value instanceof String)) {
+                return promote(value);
+            }
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, grow(size));
+            }
+            if (null == value) {
+                codes[size] = -1;
+            } else {
+                if (null == lookup) {
+                    rebuildLookup();
+                }
+                Integer code = lookup.get(value);
+                if (null == code) {
+                    code = dictionary.size();
+                    dictionary.add((String) value);
+                    lookup.put((String) value, code);
+                }
+                codes[size] = code;
+            }
+            size++;
+            return this;
+        }
+
+        @Override
+        Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        void trim() {
+            codes = Arrays.copyOf(codes, size);
+            dictionary.trimToSize();
+            lookup = null;
+        }
+
+        private void rebuildLookup() {
+            lookup = new HashMap<>(dictionary.size() * 2);
+            for (int i = 0; i < dictionary.size(); i++) {
+                lookup.put(dictionary.get(i), i);
+            }
+        }
+    }
+
+    private static final class ObjectVector extends ColumnVector {
+
+        private static final long serialVersionUID = 1L;
+
+        private Object[] values;
+
+        private ObjectVector(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        ColumnVector append(Object value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(size));
+            }
+            values[size++] = value;
+            return this;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -34,6 +34,10 @@ public class CustomDataSource {
     private String keyword_suffix;
     private String alias_prefix;
     private String alias_suffix;
+    /**
+     * 分页改写方式，见 PaginationDialectEnum，为空时不改写
+     */
+    private String pagination;
 
 
     public void setKeyword_prefix(String keyword_prefix) {
@@ -24,7 +24,15 @@ import lombok.Data;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * 分页结果，由 SqlUtils 查询得到时 resultList 为列式存储的 {@link ColumnarResultList}
+ */
 @Data
 public class PaginateWithQueryColumns extends Paginate<Map<String, Object>> {
     List<QueryColumn> columns;
+
+    /**
+     * totalCount 为估算值，精确总数在后台统计
+     */
+    boolean countApproximate;
 }
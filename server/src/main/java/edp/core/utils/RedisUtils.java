@@ -73,6 +73,19 @@ public class RedisUtils {
 		return valueOperations.get(key);
 	}
 
+	/**
+	 * 剩余过期时间（秒），key 不存在时为 -2，未设置过期时间时为 -1
+	 *
+	 * @param key
+	 * @return
+	 */
+	public Long getExpire(String key) {
+		if (!isRedisEnable) {
+			return null;
+		}
+		return redisTemplate.getExpire(key, TimeUnit.SECONDS);
+	}
+
 	public boolean delete(String key) {
 		return isRedisEnable && redisTemplate.delete(key);
 	}
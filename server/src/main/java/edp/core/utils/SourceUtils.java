@@ -27,6 +27,7 @@ import edp.core.enums.DataTypeEnum;
 import edp.core.exception.ServerException;
 import edp.core.exception.SourceException;
 import edp.core.model.CustomDataSource;
+import edp.core.model.Dict;
 import edp.core.model.JdbcSourceInfo;
 import edp.davinci.runner.LoadSupportDataSourceRunner;
 import lombok.Getter;
@@ -39,6 +40,7 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Matcher;
 
@@ -107,6 +109,47 @@ public class SourceUtils {
         return conn;
     }
 
+    /**
+     * 获取 LOAD DATA LOCAL INFILE 专用的独立连接（不经过连接池），用完需关闭
+     * 只有该连接开启 allowLoadLocalInfile，连接池中的连接不允许数据库读取本机文件
+     *
+     * @param jdbcSourceInfo
+     * @return
+     * @throws SourceException
+     */
+    public Connection getLocalInfileConnection(JdbcSourceInfo jdbcSourceInfo) throws SourceException {
+        try {
+            Class.forName(getDriverClassName(jdbcSourceInfo.getJdbcUrl(), jdbcSourceInfo.getDbVersion()));
+        } catch (ClassNotFoundException e) {
+            log.error(e.toString(), e);
+            throw new SourceException(e.getMessage());
+        }
+
+        Properties properties = new Properties();
+        if (!CollectionUtils.isEmpty(jdbcSourceInfo.getProperties())) {
+            for (Dict dict : jdbcSourceInfo.getProperties()) {
+                // davinci.* 为连接池及查询配置，不传给驱动
+                if (!dict.getKey().toLowerCase().startsWith("davinci.")) {
+                    properties.setProperty(dict.getKey(), dict.getValue());
+                }
+            }
+        }
+        if (null != jdbcSourceInfo.getUsername()) {
+            properties.setProperty("user", jdbcSourceInfo.getUsername());
+        }
+        if (null != jdbcSourceInfo.getPassword()) {
+            properties.setProperty("password", jdbcSourceInfo.getPassword());
+        }
+        properties.setProperty("allowLoadLocalInfile", "true");
+
+        try {
+            return DriverManager.getConnection(jdbcSourceInfo.getJdbcUrl(), properties);
+        } catch (SQLException e) {
+            log.error("Get local infile connection error, jdbcUrl:{}, e:{}", jdbcSourceInfo.getJdbcUrl(), e);
+            throw new SourceException("Get connection error, jdbcUrl:" + jdbcSourceInfo.getJdbcUrl());
+        }
+    }
+
     private Connection getConnectionWithRetry(JdbcSourceInfo jdbcSourceInfo) {
         int rc = 1;
         for (; ; ) {
@@ -256,6 +299,7 @@ public class SourceUtils {
      */
     public void releaseDataSource(JdbcSourceInfo jdbcSourceInfo) {
 		jdbcDataSource.removeDatasource(jdbcSourceInfo);
+		SqlUtils.clearUnsupportedPagination(jdbcSourceInfo.getJdbcUrl());
     }
 
     public static String getKey(String name, String jdbcUrl, String username, String password, String version, boolean isExt) {
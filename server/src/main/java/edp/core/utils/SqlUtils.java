@@ -18,17 +18,28 @@
 
 package edp.core.utils;
 
+import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.sql.SQLUtils;
 import com.alibaba.druid.util.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edp.core.common.jdbc.BatchRowBinder;
+import edp.core.common.jdbc.CancellableJdbcTemplate;
 import edp.core.common.jdbc.JdbcDataSource;
+import edp.core.common.jdbc.QueryCancelRegistry;
+import edp.core.common.jdbc.ResultStreamHandler;
 import edp.core.consts.Consts;
+import edp.core.enums.CountModeEnum;
 import edp.core.enums.DataTypeEnum;
+import edp.core.enums.PaginationDialectEnum;
 import edp.core.enums.SqlTypeEnum;
 import edp.core.exception.ServerException;
 import edp.core.exception.SourceException;
 import edp.core.model.*;
+import edp.davinci.core.common.SourceQueryScheduler;
 import edp.davinci.core.enums.LogNameEnum;
-import edp.davinci.core.enums.SqlColumnEnum;
+import edp.davinci.core.enums.QueryLaneEnum;
 import edp.davinci.core.utils.SourcePasswordEncryptUtils;
 import edp.davinci.core.utils.SqlParseUtils;
 import edp.davinci.model.Source;
@@ -40,21 +51,25 @@ import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.*;
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.*;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static edp.core.consts.Consts.*;
 import static edp.core.enums.DataTypeEnum.*;
@@ -69,12 +84,50 @@ public class SqlUtils {
     @Autowired
     private JdbcDataSource jdbcDataSource;
 
+    @Autowired
+    private SourceQueryScheduler sourceQueryScheduler;
+
+    /**
+     * 由 init(Source) 创建时不为空，附属查询（统计总数）按该数据源做准入控制
+     */
+    private Source source;
+
     @Value("${source.result-limit:1000000}")
     private int resultLimit;
 
     @Value("${source.enable-query-log:false}")
     private boolean isQueryLogEnable;
 
+    /**
+     * executeBatch 每次提交到数据库的行数
+     */
+    @Value("${source.batch.size:1000}")
+    private int batchSize;
+
+    /**
+     * executeBatch 每多少行 commit 一次
+     */
+    @Value("${source.batch.commit-rows:10000}")
+    private int commitRows;
+
+    /**
+     * 查询超时（秒），0 表示不限制，可通过 source 属性 davinci.query-timeout 覆盖
+     */
+    @Value("${source.query.timeout-seconds:600}")
+    private int queryTimeout;
+
+    /**
+     * 导出查询超时（秒），0 表示不限制
+     */
+    @Value("${source.query.export-timeout-seconds:0}")
+    private int exportQueryTimeout;
+
+    /**
+     * 分页查询统计总数的方式：serial/parallel/async
+     */
+    @Value("${source.query.count-mode:serial}")
+    private String countMode;
+
     private static final String TABLE = "TABLE";
 
     private static final String VIEW = "VIEW";
@@ -85,6 +138,43 @@ public class SqlUtils {
 
     private static final String TABLE_TYPE = "TABLE_TYPE";
 
+    /**
+     * SQL 解析结果缓存，同一 view sql 在一次查询及导出中会被多次解析
+     */
+    private static final int PARSE_CACHE_SIZE = 2048;
+
+    private static final Cache<String, String> COUNT_SQL_CACHE = newParseCache();
+
+    private static final Cache<String, Boolean> SELECT_CACHE = newParseCache();
+
+    private static final Cache<String, Set<String>> FROMS_AND_JOINS_CACHE = newParseCache();
+
+    /**
+     * 统计总数的线程池，直接移交不排队，parallel 模式下没有空闲线程时退回当前线程执行，async 模式下跳过本次统计
+     */
+    private static final ExecutorService COUNT_EXECUTOR = new ThreadPoolExecutor(0, 8, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new ThreadFactoryBuilder().setNameFormat("query-count-%d").setDaemon(true).build());
+
+    /**
+     * async 模式下后台统计得到的总数
+     */
+    private static final Cache<String, Integer> ASYNC_COUNT_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    private static final Set<String> PENDING_COUNTS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 分页改写语法不被支持、已退回跳行方式的 数据源@方言，过期或数据源释放后重新尝试
+     */
+    private static final Cache<String, Boolean> UNSUPPORTED_PAGINATIONS = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    private static final Pattern PATTERN_EXPLAIN_ROWS = Pattern.compile("(?:rows:\\s*|cardinality=)([\\d.]+)([KMBT]?)");
+
     private JdbcSourceInfo jdbcSourceInfo;
 
     @Getter
@@ -92,6 +182,8 @@ public class SqlUtils {
 
     private SourceUtils sourceUtils;
 
+    private volatile DataSource dataSource;
+
     private static String sqlTempDelimiter;
 
     @Value("${sql-template-delimiter:$}")
@@ -112,9 +204,16 @@ public class SqlUtils {
                 .withDbVersion(source.getDbVersion())
                 .withProperties(source.getProperties())
                 .withIsExt(source.isExt())
+                .withSource(source)
+                .withSourceQueryScheduler(this.sourceQueryScheduler)
                 .withJdbcDataSource(this.jdbcDataSource)
                 .withResultLimit(this.resultLimit)
                 .withIsQueryLogEnable(this.isQueryLogEnable)
+                .withBatchSize(this.batchSize)
+                .withCommitRows(this.commitRows)
+                .withQueryTimeout(this.queryTimeout)
+                .withExportQueryTimeout(this.exportQueryTimeout)
+                .withCountMode(this.countMode)
                 .build();
     }
 
@@ -131,9 +230,15 @@ public class SqlUtils {
                 .withDbVersion(dbVersion)
                 .withProperties(properties)
                 .withIsExt(ext)
+                .withSourceQueryScheduler(this.sourceQueryScheduler)
                 .withJdbcDataSource(this.jdbcDataSource)
                 .withResultLimit(this.resultLimit)
                 .withIsQueryLogEnable(this.isQueryLogEnable)
+                .withBatchSize(this.batchSize)
+                .withCommitRows(this.commitRows)
+                .withQueryTimeout(this.queryTimeout)
+                .withExportQueryTimeout(this.exportQueryTimeout)
+                .withCountMode(this.countMode)
                 .build();
     }
 
@@ -151,6 +256,13 @@ public class SqlUtils {
     }
 
     public PaginateWithQueryColumns syncQuery4Paginate(String sql, Integer pageNo, Integer pageSize, Integer totalCount, Integer limit, Set<String> excludeColumns) throws Exception {
+        return syncQuery4Paginate(sql, pageNo, pageSize, totalCount, limit, excludeColumns, false);
+    }
+
+    /**
+     * @param keyset sql 已按上一页末行的排序值过滤（keyset 分页），本页从首行读取
+     */
+    public PaginateWithQueryColumns syncQuery4Paginate(String sql, Integer pageNo, Integer pageSize, Integer totalCount, Integer limit, Set<String> excludeColumns, boolean keyset) throws Exception {
         if (null == pageNo || pageNo < 1) {
             pageNo = 0;
         }
@@ -163,7 +275,7 @@ public class SqlUtils {
         if (null == limit) {
             limit = -1;
         }
-        PaginateWithQueryColumns paginate = query4Paginate(sql, pageNo, pageSize, totalCount, limit, excludeColumns);
+        PaginateWithQueryColumns paginate = query4Paginate(sql, pageNo, pageSize, totalCount, limit, excludeColumns, keyset);
         return paginate;
     }
 
@@ -184,6 +296,10 @@ public class SqlUtils {
     }
 
     public PaginateWithQueryColumns query4Paginate(String sql, int pageNo, int pageSize, int totalCount, int limit, Set<String> excludeColumns) {
+        return query4Paginate(sql, pageNo, pageSize, totalCount, limit, excludeColumns, false);
+    }
+
+    public PaginateWithQueryColumns query4Paginate(String sql, int pageNo, int pageSize, int totalCount, int limit, Set<String> excludeColumns, boolean keyset) {
 
         PaginateWithQueryColumns paginateWithQueryColumns = new PaginateWithQueryColumns();
 
@@ -214,34 +330,58 @@ public class SqlUtils {
 
             int startRow = (pageNo - 1) * pageSize;
 
+            CountModeEnum mode = CountModeEnum.getCountMode(countMode);
+            CountTask countTask = null;
+            boolean countApproximate = false;
             if (pageNo == 1 || totalCount == 0) {
-                Object o = jdbcTemplate.queryForList(getCountSql(sql), Object.class).get(0);
-                totalCount = Integer.parseInt(String.valueOf(o));
+                String countSql = getCountSql(sql);
+                if (mode == CountModeEnum.ASYNC) {
+                    Integer count = getAsyncCount(countSql);
+                    if (null != count) {
+                        totalCount = count;
+                    } else {
+                        countApproximate = true;
+                        totalCount = (int) Math.min(Integer.MAX_VALUE, estimateCount(sql));
+                    }
+                } else {
+                    if (mode == CountModeEnum.PARALLEL && hasSpareConnection()) {
+                        countTask = submitCount(countSql);
+                    }
+                    if (null == countTask) {
+                        totalCount = queryCount(countSql);
+                    }
+                }
             }
 
-            if (limit > 0) {
-                totalCount = Math.min(Math.min(limit, resultLimit), totalCount);
-                if (limit < pageNo * pageSize) {
-                    jdbcTemplate.setMaxRows(limit - startRow);
-                } else {
-                    jdbcTemplate.setMaxRows(Math.min(limit, pageSize));
+            int pageRows = limit > 0 ? Math.min(pageSize, limit - startRow) : pageSize;
+            try {
+                if (pageRows > 0) {
+                    sql = getResultForPage(sql, paginateWithQueryColumns, jdbcTemplate, excludeColumns, keyset ? 0 : startRow, pageRows);
                 }
-            } else {
-                jdbcTemplate.setMaxRows(pageNo * pageSize);
+            } catch (RuntimeException e) {
+                if (null != countTask) {
+                    countTask.cancel("page query failed");
+                }
+                throw e;
             }
 
-            paginateWithQueryColumns.setTotalCount(totalCount);
+            if (null != countTask) {
+                totalCount = getCount(countTask);
+            }
 
-            if (this.dataTypeEnum == MYSQL) {
-                sql = sql + " LIMIT " + startRow + ", " + pageSize;
-                getResultForPaginate(sql, paginateWithQueryColumns, jdbcTemplate, excludeColumns, -1);
-            } else if (this.dataTypeEnum == KYLIN) {
-                sql = sql + " LIMIT " + pageSize + " OFFSET "+ startRow;
-                getResultForPaginate(sql, paginateWithQueryColumns, jdbcTemplate, excludeColumns, -1);
+            if (countApproximate) {
+                // 估算值不能小于已读到的行数，整页时至少多出一页以便继续翻页
+                int fetched = startRow + paginateWithQueryColumns.getResultList().size();
+                int lowerBound = paginateWithQueryColumns.getResultList().size() < pageSize ? fetched : fetched + pageSize;
+                totalCount = Math.max(totalCount, lowerBound);
+                paginateWithQueryColumns.setCountApproximate(true);
             }
-            else {
-                getResultForPaginate(sql, paginateWithQueryColumns, jdbcTemplate, excludeColumns, startRow);
+
+            if (limit > 0) {
+                totalCount = Math.min(Math.min(limit, resultLimit), totalCount);
             }
+
+            paginateWithQueryColumns.setTotalCount(totalCount);
         }
 
         if (isQueryLogEnable) {
@@ -256,6 +396,323 @@ public class SqlUtils {
         return paginateWithQueryColumns;
     }
 
+    /**
+     * 流式查询，结果逐行交给 handler，不在内存中累积
+     *
+     * @param sql
+     * @param limit
+     * @param excludeColumns
+     * @param handler
+     * @return 读取行数
+     */
+    public long query4Stream(String sql, int limit, Set<String> excludeColumns, ResultStreamHandler handler) {
+
+        long before = System.currentTimeMillis();
+
+        JdbcTemplate jdbcTemplate = jdbcTemplate();
+        jdbcTemplate.setMaxRows(limit > 0 ? Math.min(limit, resultLimit) : resultLimit);
+
+        // special for mysql
+        if (getDataTypeEnum() == DataTypeEnum.MYSQL) {
+            jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        }
+
+        Set<String> queryFromsAndJoins = getQueryFromsAndJoins(sql);
+        Long count = jdbcTemplate.query(sql, rs -> {
+            if (null == rs) {
+                return 0L;
+            }
+
+            List<QueryColumn> queryColumns = new ArrayList<>();
+            Map<String, Integer> columnIndexes = getColumnIndexes(rs.getMetaData(), queryFromsAndJoins, excludeColumns, queryColumns);
+            String[] labels = columnIndexes.keySet().toArray(new String[0]);
+            int[] indexes = columnIndexes.values().stream().mapToInt(Integer::intValue).toArray();
+
+            // 行缓冲区复用，key 顺序固定
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String label : labels) {
+                row.put(label, null);
+            }
+
+            long rowCount = 0L;
+            try {
+                handler.onColumns(queryColumns);
+                while (rs.next()) {
+                    for (int i = 0; i < indexes.length; i++) {
+                        Object value = rs.getObject(indexes[i]);
+                        row.put(labels[i], value instanceof byte[] ? new String((byte[]) value) : value);
+                    }
+                    handler.onRow(row);
+                    rowCount++;
+                }
+                // 与 query4Paginate 不分页时的结果一致
+                handler.onComplete(1, (int) rowCount, rowCount, false);
+            } catch (IOException e) {
+                // 客户端已断开，取消查询尽快归还连接
+                QueryCancelRegistry.cancelCurrent("result write failed: " + e.getMessage());
+                throw new ServerException(e.getMessage(), e);
+            }
+            return rowCount;
+        });
+
+        if (isQueryLogEnable) {
+            String md5 = MD5Util.getMD5(sql + limit, true, 16);
+            sqlLogger.info("{} stream query for {} ms, total count:{}, sql:{}",
+                    md5, System.currentTimeMillis() - before, count, formatSql(sql));
+        }
+
+        return null == count ? 0L : count;
+    }
+
+    /**
+     * 按数据源方言改写为只查询当前页的 SQL；方言不支持时（如旧版本不支持 OFFSET）退回读取后跳过前面的行，
+     * 退回成功后该数据源不再改写
+     *
+     * @return 实际执行的 SQL
+     */
+    private String getResultForPage(String sql, PaginateWithQueryColumns paginateWithQueryColumns, JdbcTemplate jdbcTemplate, Set<String> excludeColumns, int offset, int rows) {
+        PaginationDialectEnum dialect = getPaginationDialect();
+        String pageSql = dialect.paginate(sql, offset, rows);
+        String unsupportedKey = jdbcSourceInfo.getJdbcUrl() + AT_SYMBOL + dialect.getDialect();
+
+        if (null != pageSql && null == UNSUPPORTED_PAGINATIONS.getIfPresent(unsupportedKey)) {
+            Set<String> pageExcludeColumns = excludeColumns;
+            if (null != dialect.getExtraColumn()) {
+                pageExcludeColumns = new HashSet<>();
+                if (null != excludeColumns) {
+                    pageExcludeColumns.addAll(excludeColumns);
+                }
+                pageExcludeColumns.add(dialect.getExtraColumn());
+            }
+
+            jdbcTemplate.setMaxRows(rows);
+            try {
+                getResultForPaginate(pageSql, paginateWithQueryColumns, jdbcTemplate, pageExcludeColumns, -1);
+                return pageSql;
+            } catch (DataAccessException e) {
+                // 只有语法错误才说明改写不被支持，超时、取消、连接等错误原样抛出
+                if (!isSyntaxError(e)) {
+                    throw e;
+                }
+                log.warn("Paginated query with {} failed, retry by skipping rows: {}", dialect.getDialect(), e.getMessage());
+            }
+
+            jdbcTemplate.setMaxRows(offset + rows);
+            getResultForPaginate(sql, paginateWithQueryColumns, jdbcTemplate, excludeColumns, offset);
+            UNSUPPORTED_PAGINATIONS.put(unsupportedKey, Boolean.TRUE);
+            return sql;
+        }
+
+        jdbcTemplate.setMaxRows(offset + rows);
+        getResultForPaginate(sql, paginateWithQueryColumns, jdbcTemplate, excludeColumns, offset);
+        return sql;
+    }
+
+    /**
+     * BadSqlGrammarException 或 SQLState 为语法错误类（42、37）
+     */
+    private static boolean isSyntaxError(DataAccessException e) {
+        if (e instanceof BadSqlGrammarException) {
+            return true;
+        }
+        Throwable cause = e.getMostSpecificCause();
+        if (cause instanceof SQLException) {
+            String sqlState = ((SQLException) cause).getSQLState();
+            return null != sqlState && (sqlState.startsWith("42") || sqlState.startsWith("37"));
+        }
+        return false;
+    }
+
+    /**
+     * 数据源释放（配置变更或重连）后清除分页改写不支持的标记
+     *
+     * @param jdbcUrl
+     */
+    public static void clearUnsupportedPagination(String jdbcUrl) {
+        if (StringUtils.isEmpty(jdbcUrl)) {
+            return;
+        }
+        String prefix = jdbcUrl + AT_SYMBOL;
+        UNSUPPORTED_PAGINATIONS.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private PaginationDialectEnum getPaginationDialect() {
+        if (!CollectionUtils.isEmpty(jdbcSourceInfo.getProperties())) {
+            for (Dict dict : jdbcSourceInfo.getProperties()) {
+                if ("davinci.pagination".equalsIgnoreCase(dict.getKey()) && !StringUtils.isEmpty(dict.getValue())) {
+                    return PaginationDialectEnum.getPaginationDialect(dict.getValue());
+                }
+            }
+        }
+
+        CustomDataSource customDataSource = CustomDataSourceUtils.getInstance(jdbcSourceInfo.getJdbcUrl(), jdbcSourceInfo.getDbVersion());
+        if (null != customDataSource && !StringUtils.isEmpty(customDataSource.getPagination())) {
+            return PaginationDialectEnum.getPaginationDialect(customDataSource.getPagination());
+        }
+
+        return PaginationDialectEnum.getPaginationDialect(dataTypeEnum);
+    }
+
+    private int queryCount(String countSql) {
+        Object o = jdbcTemplate().queryForList(countSql, Object.class).get(0);
+        return Integer.parseInt(String.valueOf(o));
+    }
+
+    /**
+     * 另占一个连接并发统计总数，统计在请求的子查询范围内执行，可随请求或单独取消；
+     * 数据源没有空闲名额或线程池没有空闲线程时返回 null
+     */
+    private CountTask submitCount(String countSql) {
+        SourceQueryScheduler.Permit permit = tryAcquire(QueryLaneEnum.INTERACTIVE);
+        if (null == permit) {
+            return null;
+        }
+        QueryCancelRegistry.QueryScope scope = QueryCancelRegistry.fork();
+        try {
+            Future<Integer> future = COUNT_EXECUTOR.submit(QueryCancelRegistry.propagate(scope, () -> {
+                try {
+                    return queryCount(countSql);
+                } finally {
+                    permit.release();
+                    scope.close();
+                }
+            }));
+            return new CountTask(future, scope);
+        } catch (RejectedExecutionException e) {
+            permit.release();
+            scope.close();
+            return null;
+        }
+    }
+
+    /**
+     * 等待并发统计结果，最长等待请求剩余的查询超时
+     */
+    private int getCount(CountTask countTask) {
+        int timeout = QueryCancelRegistry.effectiveTimeout(queryTimeout);
+        try {
+            return timeout > 0 ? countTask.future.get(timeout, TimeUnit.SECONDS) : countTask.future.get();
+        } catch (TimeoutException e) {
+            countTask.cancel("count query timeout");
+            throw new ServerException("Count query timeout after " + timeout + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            countTask.cancel("count query interrupted");
+            throw new ServerException("Count query is interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ServerException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 并发统计需要额外连接，连接池已接近用满时退回串行，避免挤占其他查询
+     */
+    private boolean hasSpareConnection() {
+        DataSource current = getDataSource();
+        if (current instanceof DruidDataSource) {
+            DruidDataSource druidDataSource = (DruidDataSource) current;
+            return druidDataSource.getActiveCount() + 1 < druidDataSource.getMaxActive();
+        }
+        return true;
+    }
+
+    /**
+     * 获取后台统计的总数，尚未统计时提交后台任务并返回 null
+     */
+    private Integer getAsyncCount(String countSql) {
+        String key = MD5Util.getMD5(jdbcSourceInfo.getName() + jdbcSourceInfo.getJdbcUrl() + countSql, true, 32);
+        Integer count = ASYNC_COUNT_CACHE.getIfPresent(key);
+        if (null != count || !PENDING_COUNTS.add(key)) {
+            return count;
+        }
+
+        // 后台统计走 count 通道，与导出、定时任务共享后台份额，没有空闲名额时跳过本次统计
+        SourceQueryScheduler.Permit permit = tryAcquire(QueryLaneEnum.COUNT);
+        if (null == permit) {
+            PENDING_COUNTS.remove(key);
+            return null;
+        }
+        try {
+            COUNT_EXECUTOR.execute(() -> {
+                try {
+                    ASYNC_COUNT_CACHE.put(key, queryCount(countSql));
+                } catch (Exception e) {
+                    log.warn("Async count query error: {}", e.getMessage());
+                } finally {
+                    permit.release();
+                    PENDING_COUNTS.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permit.release();
+            PENDING_COUNTS.remove(key);
+        }
+        return null;
+    }
+
+    private SourceQueryScheduler.Permit tryAcquire(QueryLaneEnum lane) {
+        if (null == sourceQueryScheduler) {
+            return SourceQueryScheduler.NO_PERMIT;
+        }
+        return sourceQueryScheduler.tryAcquire(source, lane);
+    }
+
+    private static final class CountTask {
+
+        private final Future<Integer> future;
+
+        private final QueryCancelRegistry.QueryScope scope;
+
+        private CountTask(Future<Integer> future, QueryCancelRegistry.QueryScope scope) {
+            this.future = future;
+            this.scope = scope;
+        }
+
+        /**
+         * 取消统计语句并中断等待
+         */
+        private void cancel(String reason) {
+            scope.cancel(reason);
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 通过 EXPLAIN 估算结果行数，目前支持 presto 及 impala 的计划行数，无法估算时返回 0
+     *
+     * @param sql
+     * @return
+     */
+    private long estimateCount(String sql) {
+        if (dataTypeEnum != PRESTO && dataTypeEnum != IMPALA) {
+            return 0L;
+        }
+
+        try {
+            JdbcTemplate jdbcTemplate = jdbcTemplate();
+            jdbcTemplate.setMaxRows(resultLimit);
+            List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+            for (String line : plan) {
+                Matcher matcher = PATTERN_EXPLAIN_ROWS.matcher(String.valueOf(line));
+                if (matcher.find()) {
+                    double rows = Double.parseDouble(matcher.group(1));
+                    // impala 以 K/M/B/T 缩写行数
+                    if (!matcher.group(2).isEmpty()) {
+                        rows *= Math.pow(1000, "KMBT".indexOf(matcher.group(2)) + 1);
+                    }
+                    return (long) rows;
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Estimate count error: {}", e.getMessage());
+        }
+        return 0L;
+    }
+
     private void getResultForPaginate(String sql, PaginateWithQueryColumns paginateWithQueryColumns, JdbcTemplate jdbcTemplate, Set<String> excludeColumns, int startRow) {
         Set<String> queryFromsAndJoins = getQueryFromsAndJoins(sql);
         jdbcTemplate.query(sql, rs -> {
@@ -263,59 +720,95 @@ public class SqlUtils {
                 return paginateWithQueryColumns;
             }
 
-            ResultSetMetaData metaData = rs.getMetaData();
             List<QueryColumn> queryColumns = new ArrayList<>();
-            for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                String key = getColumnLabel(queryFromsAndJoins, metaData.getColumnLabel(i));
-                if (!CollectionUtils.isEmpty(excludeColumns) && excludeColumns.contains(key)) {
-                    continue;
-                }
-                queryColumns.add(new QueryColumn(key, metaData.getColumnTypeName(i)));
-            }
+            Map<String, Integer> columnIndexes = getColumnIndexes(rs.getMetaData(), queryFromsAndJoins, excludeColumns, queryColumns);
             paginateWithQueryColumns.setColumns(queryColumns);
 
-            List<Map<String, Object>> resultList = new ArrayList<>();
+            ColumnarResultList resultList = new ColumnarResultList(new ArrayList<>(columnIndexes.keySet()));
+            int[] indexes = columnIndexes.values().stream().mapToInt(Integer::intValue).toArray();
+            Object[] row = new Object[indexes.length];
 
             try {
                 if (startRow > 0) {
                     rs.absolute(startRow);
                 }
                 while (rs.next()) {
-                    resultList.add(getResultObjectMap(excludeColumns, rs, metaData, queryFromsAndJoins));
+                    appendResultRow(rs, indexes, row, resultList);
                 }
             } catch (Throwable e) {
                 int currentRow = 0;
                 while (rs.next()) {
                     if (currentRow >= startRow) {
-                        resultList.add(getResultObjectMap(excludeColumns, rs, metaData, queryFromsAndJoins));
+                        appendResultRow(rs, indexes, row, resultList);
                     }
                     currentRow++;
                 }
             }
 
+            resultList.seal();
             paginateWithQueryColumns.setResultList(resultList);
 
             return paginateWithQueryColumns;
         });
     }
 
-    private Map<String, Object> getResultObjectMap(Set<String> excludeColumns, ResultSet rs, ResultSetMetaData metaData, Set<String> queryFromsAndJoins) throws SQLException {
-        Map<String, Object> map = new LinkedHashMap<>();
-
+    /**
+     * 解析结果集列标签，返回 标签 -> 列序号
+     * 同名列取第一列，与按标签 getObject 的结果一致
+     *
+     * @param metaData
+     * @param queryFromsAndJoins
+     * @param excludeColumns
+     * @param queryColumns
+     * @return
+     * @throws SQLException
+     */
+    private static Map<String, Integer> getColumnIndexes(ResultSetMetaData metaData, Set<String> queryFromsAndJoins, Set<String> excludeColumns, List<QueryColumn> queryColumns) throws SQLException {
+        Map<String, Integer> columnIndexes = new LinkedHashMap<>();
         for (int i = 1; i <= metaData.getColumnCount(); i++) {
-            String key = metaData.getColumnLabel(i);
-            String label = getColumnLabel(queryFromsAndJoins, key);
-
-            if (!CollectionUtils.isEmpty(excludeColumns) && excludeColumns.contains(label)) {
+            String key = getColumnLabel(queryFromsAndJoins, metaData.getColumnLabel(i));
+            if (!CollectionUtils.isEmpty(excludeColumns) && excludeColumns.contains(key)) {
                 continue;
             }
-            Object value = rs.getObject(key);
-            map.put(label, value instanceof byte[] ? new String((byte[]) value) : value);
+            queryColumns.add(new QueryColumn(key, metaData.getColumnTypeName(i)));
+            columnIndexes.putIfAbsent(key, i);
         }
-        return map;
+        return columnIndexes;
+    }
+
+    private static void appendResultRow(ResultSet rs, int[] indexes, Object[] row, ColumnarResultList resultList) throws SQLException {
+        for (int i = 0; i < indexes.length; i++) {
+            Object value = rs.getObject(indexes[i]);
+            row[i] = value instanceof byte[] ? new String((byte[]) value) : value;
+        }
+        resultList.appendRow(row);
+    }
+
+    private static <V> Cache<String, V> newParseCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(PARSE_CACHE_SIZE)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+    }
+
+    private static <V> V getParsed(Cache<String, V> cache, String sql, Function<String, V> parser) {
+        if (null == sql) {
+            return parser.apply(null);
+        }
+        String key = sql.trim();
+        V parsed = cache.getIfPresent(key);
+        if (null == parsed) {
+            parsed = parser.apply(key);
+            cache.put(key, parsed);
+        }
+        return parsed;
     }
 
     public static String getCountSql(String sql) {
+        return getParsed(COUNT_SQL_CACHE, sql, SqlUtils::parseCountSql);
+    }
+
+    private static String parseCountSql(String sql) {
         String countSql = String.format(Consts.QUERY_COUNT_SQL, sql);
         try {
             Select select = (Select) CCJSqlParserUtil.parse(sql);
@@ -332,6 +825,10 @@ public class SqlUtils {
         if (StringUtils.isEmpty(src)) {
             return false;
         }
+        return getParsed(SELECT_CACHE, src, SqlUtils::parseIsSelect);
+    }
+
+    private static boolean parseIsSelect(String src) {
         try {
             Statement parse = CCJSqlParserUtil.parse(src);
             return parse instanceof Select;
@@ -341,6 +838,10 @@ public class SqlUtils {
     }
 
     public static Set<String> getQueryFromsAndJoins(String sql) {
+        return getParsed(FROMS_AND_JOINS_CACHE, sql, SqlUtils::parseQueryFromsAndJoins);
+    }
+
+    private static Set<String> parseQueryFromsAndJoins(String sql) {
         Set<String> columnPrefixes = new HashSet<>();
         try {
             Statement parse = CCJSqlParserUtil.parse(sql);
@@ -368,7 +869,7 @@ public class SqlUtils {
         } catch (JSQLParserException e) {
             log.debug(e.getMessage(), e);
         }
-        return columnPrefixes;
+        return Collections.unmodifiableSet(columnPrefixes);
     }
 
     private static void columnPrefixExtractor(Set<String> columnPrefixes, PlainSelect plainSelect) {
@@ -687,19 +1188,86 @@ public class SqlUtils {
     }
 
     public JdbcTemplate jdbcTemplate() throws SourceException {
-        Connection connection = null;
-        try {
-            connection = sourceUtils.getConnection(jdbcSourceInfo);
-        } finally {
-            SourceUtils.releaseConnection(connection);
-        }
-        DataSource dataSource = sourceUtils.getDataSource(jdbcSourceInfo);
-        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return jdbcTemplate(queryTimeout);
+    }
+
+    /**
+     * 导出使用的 JdbcTemplate，超时单独配置
+     *
+     * @return
+     * @throws SourceException
+     */
+    public JdbcTemplate exportJdbcTemplate() throws SourceException {
+        return jdbcTemplate(exportQueryTimeout);
+    }
+
+    /**
+     * JdbcTemplate 按查询设置 maxRows/fetchSize，不能跨线程共享，每次创建；
+     * 数据源在实例内缓存，连接有效性交由连接池空闲检测，不再逐次探测连接；
+     * 连接池关闭或建连失败后停止补充连接时重新获取
+     */
+    private JdbcTemplate jdbcTemplate(int timeout) throws SourceException {
+        JdbcTemplate jdbcTemplate = new CancellableJdbcTemplate(getDataSource(), timeout);
         jdbcTemplate.setDatabaseProductName(jdbcSourceInfo.getDatabase());
         jdbcTemplate.setFetchSize(500);
         return jdbcTemplate;
     }
 
+    private DataSource getDataSource() throws SourceException {
+        DataSource current = this.dataSource;
+        if (null == current || (current instanceof DruidDataSource
+                && (((DruidDataSource) current).isClosed() || JdbcDataSource.isBroken((DruidDataSource) current)))) {
+            current = sourceUtils.getDataSource(jdbcSourceInfo);
+            this.dataSource = current;
+        }
+        return current;
+    }
+
+    /**
+     * 连接池状态，连接池尚未建立时返回 null
+     *
+     * @return
+     */
+    public Map<String, Object> getPoolStats() {
+        return jdbcDataSource.getPoolStats(jdbcSourceInfo);
+    }
+
+    /**
+     * 数据源连接池最大连接数，source 属性 davinci.max-active 优先
+     *
+     * @return
+     */
+    public int getMaxActive() {
+        if (!CollectionUtils.isEmpty(jdbcSourceInfo.getProperties())) {
+            for (Dict dict : jdbcSourceInfo.getProperties()) {
+                if ("davinci.max-active".equalsIgnoreCase(dict.getKey())) {
+                    try {
+                        return Integer.parseInt(dict.getValue().trim());
+                    } catch (Exception e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return jdbcDataSource.getMaxActive();
+    }
+
+    private static int getQueryTimeout(List<Dict> properties, int defaultTimeout) {
+        if (CollectionUtils.isEmpty(properties)) {
+            return defaultTimeout;
+        }
+        for (Dict dict : properties) {
+            if ("davinci.query-timeout".equalsIgnoreCase(dict.getKey())) {
+                try {
+                    return Integer.parseInt(dict.getValue().trim());
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid davinci.query-timeout: {}", dict.getValue());
+                }
+            }
+        }
+        return defaultTimeout;
+    }
+
     public boolean testConnection() throws SourceException {
         try (Connection connection = sourceUtils.getConnection(jdbcSourceInfo);) {
             if (null != connection) {
@@ -731,95 +1299,31 @@ public class SqlUtils {
             if (null != connection) {
                 connection.setAutoCommit(false);
                 pstmt = connection.prepareStatement(sql);
-                //每1000条commit一次
-                int n = 10000;
 
-                for (Map<String, Object> map : datas) {
-                    int i = 1;
-                    for (QueryColumn queryColumn : headers) {
-                        Object obj = map.get(queryColumn.getName());
-                        switch (SqlColumnEnum.toJavaType(queryColumn.getType())) {
-                            case "Short":
-                                pstmt.setShort(i, null == obj || String.valueOf(obj).equals(EMPTY) ? (short) 0 : Short.parseShort(String.valueOf(obj).trim()));
-                                break;
-                            case "Integer":
-                                pstmt.setInt(i, null == obj || String.valueOf(obj).equals(EMPTY) ? 0 : Integer.parseInt(String.valueOf(obj).trim()));
-                                break;
-                            case "Long":
-                                pstmt.setLong(i, null == obj || String.valueOf(obj).equals(EMPTY) ? 0L : Long.parseLong(String.valueOf(obj).trim()));
-                                break;
-                            case "BigDecimal":
-                                pstmt.setBigDecimal(i, null == obj || String.valueOf(obj).equals(EMPTY) ? null : (BigDecimal) obj);
-                                break;
-                            case "Float":
-                                pstmt.setFloat(i, null == obj || String.valueOf(obj).equals(EMPTY) ? 0.0F : Float.parseFloat(String.valueOf(obj).trim()));
-                                break;
-                            case "Double":
-                                pstmt.setDouble(i, null == obj || String.valueOf(obj).equals(EMPTY) ? 0.0D : Double.parseDouble(String.valueOf(obj).trim()));
-                                break;
-                            case "String":
-                                pstmt.setString(i, (String) obj);
-                                break;
-                            case "Boolean":
-                                pstmt.setBoolean(i, null != obj && Boolean.parseBoolean(String.valueOf(obj).trim()));
-                                break;
-                            case "Bytes":
-                                pstmt.setBytes(i, (byte[]) obj);
-                                break;
-                            case "Date":
-                                if (obj == null) {
-                                    pstmt.setDate(i, null);
-                                } else {
-                                    java.util.Date date = (java.util.Date) obj;
-                                    pstmt.setDate(i, DateUtils.toSqlDate(date));
-                                }
-                                break;
-                            case "DateTime":
-                                if (obj == null) {
-                                    pstmt.setTimestamp(i, null);
-                                } else {
-                                    if (obj instanceof LocalDateTime) {
-                                        pstmt.setTimestamp(i, Timestamp.valueOf((LocalDateTime) obj));
-                                    } else {
-                                        DateTime dateTime = (DateTime) obj;
-                                        pstmt.setTimestamp(i, DateUtils.toTimestamp(dateTime));
-                                    }
-                                }
-                                break;
-                            case "Timestamp":
-                                if (obj == null) {
-                                    pstmt.setTimestamp(i, null);
-                                } else {
-                                    if (obj instanceof LocalDateTime) {
-                                        pstmt.setTimestamp(i, Timestamp.valueOf((LocalDateTime) obj));
-                                    } else {
-                                        pstmt.setTimestamp(i, (Timestamp) obj);
-                                    }
-                                }
-                                break;
-                            case "Blob":
-                                pstmt.setBlob(i, null == obj ? null : (Blob) obj);
-                                break;
-                            case "Clob":
-                                pstmt.setClob(i, null == obj ? null : (Clob) obj);
-                                break;
-                            default:
-                                pstmt.setObject(i, obj);
-                        }
-                        i++;
-                    }
+                BatchRowBinder binder = BatchRowBinder.of(headers);
+                int batchSize = Math.max(this.batchSize, 1);
+                int commitRows = Math.max(this.commitRows, batchSize);
+                int rows = 0;
+                int uncommitted = 0;
 
+                for (Map<String, Object> map : datas) {
+                    binder.bind(pstmt, map);
                     pstmt.addBatch();
-                    if (i % n == 0) {
-                        try {
-                            pstmt.executeBatch();
+                    rows++;
+                    if (rows % batchSize == 0) {
+                        pstmt.executeBatch();
+                        uncommitted += batchSize;
+                        // 每 commitRows 条 commit 一次
+                        if (uncommitted >= commitRows) {
                             connection.commit();
-                        } catch (BatchUpdateException e) {
+                            uncommitted = 0;
                         }
                     }
                 }
 
-                pstmt.executeBatch();
+                if (rows % batchSize != 0) {
+                    pstmt.executeBatch();
+                }
                 connection.commit();
             }
         } catch (Exception e) {
@@ -845,6 +1349,64 @@ public class SqlUtils {
         }
     }
 
+    /**
+     * 通过 MySQL LOAD DATA LOCAL INFILE 导入数据流，使用开启 allowLoadLocalInfile 的独立连接，只发送注入的数据流
+     *
+     * @param sql
+     * @param inputStream
+     * @return 导入行数
+     * @throws ServerException
+     */
+    public long loadDataLocalInfile(String sql, InputStream inputStream) throws ServerException {
+
+        if (StringUtils.isEmpty(sql)) {
+            log.error("Load data sql is empty");
+            throw new ServerException("Load data sql is empty");
+        }
+
+        Connection connection = null;
+        java.sql.Statement statement = null;
+        try {
+            connection = sourceUtils.getLocalInfileConnection(this.jdbcSourceInfo);
+            // 数据流读取失败时驱动仍会结束传输，在事务中执行以便回滚本次导入的行（InnoDB）；
+            // 事务只覆盖 LOAD DATA 本身，建表等 DDL 已自动提交，覆盖类导入应导入到临时表
+            connection.setAutoCommit(false);
+            statement = connection.createStatement();
+            statement.unwrap(com.mysql.cj.jdbc.JdbcStatement.class).setLocalInfileInputStream(inputStream);
+            long rows = statement.executeUpdate(sql);
+            // LOCAL 模式下主键冲突、类型转换失败只产生警告而不报错，有警告即视为导入失败
+            SQLWarning warning = statement.getWarnings();
+            if (null != warning) {
+                int count = 0;
+                for (SQLWarning w = warning; null != w; w = w.getNextWarning()) {
+                    count++;
+                }
+                throw new ServerException("Load data failed with " + count + " warning(s), first: " + warning.getMessage());
+            }
+            connection.commit();
+            return rows;
+        } catch (Exception e) {
+            log.error(e.toString(), e);
+            if (null != connection) {
+                try {
+                    connection.rollback();
+                } catch (SQLException se) {
+                    log.error(se.toString(), se);
+                }
+            }
+            throw new ServerException(e.getMessage(), e);
+        } finally {
+            if (null != statement) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    log.error(e.toString(), e);
+                }
+            }
+            SourceUtils.releaseConnection(connection);
+        }
+    }
+
     public static String getKeywordPrefix(String jdbcUrl, String dbVersion) {
         String keywordPrefix = "";
         CustomDataSource customDataSource = CustomDataSourceUtils.getInstance(jdbcUrl, dbVersion);
@@ -976,6 +1538,11 @@ public class SqlUtils {
         private JdbcDataSource jdbcDataSource;
         private int resultLimit;
         private boolean isQueryLogEnable;
+        private int batchSize;
+        private int commitRows;
+        private int queryTimeout;
+        private int exportQueryTimeout;
+        private String countMode;
         private String name;
         private String type;
         private String jdbcUrl;
@@ -984,6 +1551,8 @@ public class SqlUtils {
         private List<Dict> properties;
         private String dbVersion;
         private boolean isExt;
+        private Source source;
+        private SourceQueryScheduler sourceQueryScheduler;
 
         private SqlUtilsBuilder() {
 
@@ -1008,6 +1577,31 @@ public class SqlUtils {
             return this;
         }
 
+        SqlUtilsBuilder withBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        SqlUtilsBuilder withCommitRows(int commitRows) {
+            this.commitRows = commitRows;
+            return this;
+        }
+
+        SqlUtilsBuilder withQueryTimeout(int queryTimeout) {
+            this.queryTimeout = queryTimeout;
+            return this;
+        }
+
+        SqlUtilsBuilder withExportQueryTimeout(int exportQueryTimeout) {
+            this.exportQueryTimeout = exportQueryTimeout;
+            return this;
+        }
+
+        SqlUtilsBuilder withCountMode(String countMode) {
+            this.countMode = countMode;
+            return this;
+        }
+
         SqlUtilsBuilder withName(String name) {
             this.name = name;
             return this;
@@ -1048,6 +1642,16 @@ public class SqlUtils {
             return this;
         }
 
+        SqlUtilsBuilder withSource(Source source) {
+            this.source = source;
+            return this;
+        }
+
+        SqlUtilsBuilder withSourceQueryScheduler(SourceQueryScheduler sourceQueryScheduler) {
+            this.sourceQueryScheduler = sourceQueryScheduler;
+            return this;
+        }
+
         public SqlUtils build() throws ServerException {
             String datasource = SourceUtils.isSupportedDatasource(jdbcUrl);
             SourceUtils.checkDriver(datasource, jdbcUrl, dbVersion, isExt);
@@ -1070,6 +1674,13 @@ public class SqlUtils {
             sqlUtils.jdbcDataSource = this.jdbcDataSource;
             sqlUtils.resultLimit = this.resultLimit;
             sqlUtils.isQueryLogEnable = this.isQueryLogEnable;
+            sqlUtils.batchSize = this.batchSize;
+            sqlUtils.commitRows = this.commitRows;
+            sqlUtils.queryTimeout = getQueryTimeout(this.properties, this.queryTimeout);
+            sqlUtils.exportQueryTimeout = this.exportQueryTimeout;
+            sqlUtils.countMode = this.countMode;
+            sqlUtils.source = this.source;
+            sqlUtils.sourceQueryScheduler = this.sourceQueryScheduler;
             sqlUtils.sourceUtils = new SourceUtils(this.jdbcDataSource);
 
             return sqlUtils;
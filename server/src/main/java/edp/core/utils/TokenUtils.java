@@ -298,7 +298,7 @@ public class TokenUtils {
      * @param token
      * @return
      */
-    private Date getExpirationDate(String token) {
+    public Date getExpirationDate(String token) {
         Date expiration = null;
         try {
             final Claims claims = getClaims(token);
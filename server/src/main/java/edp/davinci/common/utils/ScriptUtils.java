@@ -22,19 +22,39 @@ package edp.davinci.common.utils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import edp.core.exception.ServerException;
 import edp.davinci.core.common.Constants;
+import edp.davinci.core.config.SpringContextHolder;
 import edp.davinci.core.model.ExcelHeader;
 import edp.davinci.dto.viewDto.Param;
 import edp.davinci.dto.viewDto.SimpleView;
 import edp.davinci.dto.viewDto.ViewExecuteParam;
+import lombok.extern.slf4j.Slf4j;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * 脚本执行工具
+ * <p>
+ * 脚本 Context 不支持多线程并发访问，这里维护一个 Context 池，所有 Context 共享同一个 Engine，
+ * 解析后的 Source 与编译结果在 Context 间复用，并发调用数受池大小（script.pool.size，默认 CPU 核数）限制
+ */
+@Slf4j
 public class ScriptUtils {
 
     private static final String LANGUAGE = "js";
@@ -43,45 +63,198 @@ public class ScriptUtils {
 
     private static final ClassLoader classLoader = ScriptUtils.class.getClassLoader();
 
+    private static final long WAIT_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 脚本引擎创建开销大，尚未使用时查询统计信息不触发创建
+     */
+    private static volatile boolean poolCreated;
+
     private enum ScriptEnum {
         INSTANCE;
 
-        private Value tableFormatJs;
-        private Value executeParamFormatJs;
+        private final Engine engine;
+        private final Source tableFormatSource;
+        private final Source executeParamFormatSource;
+
+        private final int poolSize;
+        private final long borrowTimeoutMillis;
+        private final LinkedBlockingQueue<ScriptContext> idle = new LinkedBlockingQueue<>();
+
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
 
         ScriptEnum() {
+            engine = Engine.create();
+            tableFormatSource = createSource(Constants.TABLE_FORMAT_JS);
+            executeParamFormatSource = createSource(Constants.EXECUTE_PARAM_FORMAT_JS);
+
+            int size = 0;
+            long timeout = 60000L;
+            ApplicationContext applicationContext = SpringContextHolder.getApplicationContext();
+            if (null != applicationContext) {
+                Environment environment = applicationContext.getEnvironment();
+                size = environment.getProperty("script.pool.size", Integer.class, 0);
+                timeout = environment.getProperty("script.pool.borrow-timeout-millis", Long.class, timeout);
+            }
+            poolSize = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+            borrowTimeoutMillis = timeout;
+            poolCreated = true;
+        }
+
+        private static Source createSource(String sourcePath) {
             try {
-                tableFormatJs = createScriptEngine(Constants.TABLE_FORMAT_JS, FUNC_FIELDS_HEADER);
-                executeParamFormatJs = createScriptEngine(Constants.EXECUTE_PARAM_FORMAT_JS, FUNC_DASHBOARD_ITEM_EXECUTE_PARAM);
+                return Source.newBuilder(LANGUAGE, Objects.requireNonNull(classLoader.getResource(sourcePath))).build();
             } catch (Exception e) {
-                e.printStackTrace();
+                throw new ServerException("Load script " + sourcePath + " error", e);
+            }
+        }
+
+        private ScriptContext borrow() {
+            ScriptContext scriptContext = idle.poll();
+            if (null == scriptContext) {
+                scriptContext = tryCreate();
+            }
+            if (null == scriptContext) {
+                long start = System.nanoTime();
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+                waits.incrementAndGet();
+                try {
+                    // 丢弃异常 Context 只会空出创建名额而不会归还到 idle，短轮询以便及时补建
+                    long remaining;
+                    while (null == scriptContext && (remaining = deadline - System.nanoTime()) > 0) {
+                        scriptContext = idle.poll(Math.min(remaining, WAIT_POLL_NANOS), TimeUnit.NANOSECONDS);
+                        if (null == scriptContext) {
+                            scriptContext = tryCreate();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServerException("Interrupted while waiting for script context");
+                } finally {
+                    waitNanos.addAndGet(System.nanoTime() - start);
+                }
+                if (null == scriptContext) {
+                    timeouts.incrementAndGet();
+                    log.warn("Wait for script context timeout, pool stats:{}", getPoolStats());
+                    throw new ServerException("Script engine is busy, please try again later");
+                }
+            }
+            active.incrementAndGet();
+            executions.incrementAndGet();
+            return scriptContext;
+        }
+
+        private ScriptContext tryCreate() {
+            int count;
+            while ((count = created.get()) < poolSize) {
+                if (created.compareAndSet(count, count + 1)) {
+                    try {
+                        return new ScriptContext(engine, tableFormatSource, executeParamFormatSource);
+                    } catch (RuntimeException e) {
+                        created.decrementAndGet();
+                        throw e;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void release(ScriptContext scriptContext, boolean broken) {
+            active.decrementAndGet();
+            if (broken) {
+                // 执行异常的 Context 状态不可信，丢弃后由等待者或后续调用重新创建
+                scriptContext.close();
+                created.decrementAndGet();
+                return;
             }
+            idle.offer(scriptContext);
         }
+    }
+
+    /**
+     * 池化的脚本 Context 及其中已求值的函数
+     */
+    private static class ScriptContext {
+
+        private final Context context;
+        private final Value tableFormatJs;
+        private final Value executeParamFormatJs;
 
-        private static Value createScriptEngine(String sourcePath, String member) throws Exception {
-            Context context = Context.create(LANGUAGE);
-            Source source = Source.newBuilder(LANGUAGE, Objects.requireNonNull(classLoader.getResource(sourcePath))).build();
+        private ScriptContext(Engine engine, Source tableFormatSource, Source executeParamFormatSource) {
+            context = Context.newBuilder(LANGUAGE).engine(engine).build();
+            tableFormatJs = evalFunction(tableFormatSource, FUNC_FIELDS_HEADER);
+            executeParamFormatJs = evalFunction(executeParamFormatSource, FUNC_DASHBOARD_ITEM_EXECUTE_PARAM);
+        }
+
+        private Value evalFunction(Source source, String member) {
             context.eval(source);
             Value function = context.getBindings(LANGUAGE).getMember(member);
             return function.canExecute() ? function : null;
         }
+
+        private void close() {
+            try {
+                context.close();
+            } catch (Exception e) {
+                log.warn("Close script context error:{}", e.getMessage());
+            }
+        }
     }
 
+    private static <T> T execute(Function<ScriptContext, T> function) {
+        ScriptEnum pool = ScriptEnum.INSTANCE;
+        ScriptContext scriptContext = pool.borrow();
+        boolean broken = true;
+        try {
+            T result = function.apply(scriptContext);
+            broken = false;
+            return result;
+        } finally {
+            pool.release(scriptContext, broken);
+        }
+    }
 
-    public static synchronized ViewExecuteParam getViewExecuteParam(String dashboardConfig, String widgetConfig, Set<SimpleView> views,
-                                                                    Long relationId) {
+    public static ViewExecuteParam getViewExecuteParam(String dashboardConfig, String widgetConfig, Set<SimpleView> views,
+                                                       Long relationId) {
 
-        Value js = ScriptEnum.INSTANCE.executeParamFormatJs;
-        Value result = js.execute(dashboardConfig, widgetConfig, JSON.toJSONString(views), relationId);
-        ViewExecuteParam viewExecuteParam = JSONObject.parseObject(result.asString(), ViewExecuteParam.class);
+        String result = execute(scriptContext -> scriptContext.executeParamFormatJs
+                .execute(dashboardConfig, widgetConfig, JSON.toJSONString(views), relationId).asString());
+        ViewExecuteParam viewExecuteParam = JSONObject.parseObject(result, ViewExecuteParam.class);
         return viewExecuteParam;
     }
 
-    public static synchronized List<ExcelHeader> formatHeader(String widgetConfig, List<Param> params) {
+    public static List<ExcelHeader> formatHeader(String widgetConfig, List<Param> params) {
 
-        Value js = ScriptEnum.INSTANCE.tableFormatJs;
-        Value result = js.execute(widgetConfig, JSON.toJSONString(params));
-        List<ExcelHeader> excelHeaders = JSONArray.parseArray(result.toString(), ExcelHeader.class);
+        String result = execute(scriptContext -> scriptContext.tableFormatJs
+                .execute(widgetConfig, JSON.toJSONString(params)).toString());
+        List<ExcelHeader> excelHeaders = JSONArray.parseArray(result, ExcelHeader.class);
         return excelHeaders;
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取脚本 Context 池统计信息，尚未使用时返回 null
+     *
+     * @return
+     */
+    public static Map<String, Object> getPoolStats() {
+        if (!poolCreated) {
+            return null;
+        }
+        ScriptEnum pool = ScriptEnum.INSTANCE;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", pool.poolSize);
+        stats.put("created", pool.created.get());
+        stats.put("active", pool.active.get());
+        stats.put("idle", pool.idle.size());
+        stats.put("executions", pool.executions.get());
+        stats.put("waits", pool.waits.get());
+        stats.put("waitMillis", TimeUnit.NANOSECONDS.toMillis(pool.waitNanos.get()));
+        stats.put("timeouts", pool.timeouts.get());
+        return stats;
+    }
+}
@@ -27,6 +27,7 @@ import edp.davinci.common.controller.BaseController;
 import edp.davinci.core.common.Constants;
 import edp.davinci.core.common.ResultMap;
 import edp.davinci.core.enums.DownloadType;
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.core.enums.FileTypeEnum;
 import edp.davinci.dto.viewDto.DownloadViewExecuteParam;
 import edp.davinci.model.DownloadRecord;
@@ -98,7 +99,7 @@ public class DownloadController extends BaseController {
         DownloadRecord record = downloadService.downloadById(id, token);
         FileInputStream is = null;
         try {
-            encodeFileName(request, response, record.getName() + FileTypeEnum.XLSX.getFormat());
+            encodeFileName(request, response, record.getName() + FileTypeEnum.ofPath(record.getPath()).getFormat());
             is = new FileInputStream(new File(record.getPath()));
             Streams.copy(is, response.getOutputStream(), true);
         } catch (Exception e) {
@@ -114,11 +115,17 @@ public class DownloadController extends BaseController {
     @PostMapping(value = "/submit/{type}/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity submitDownloadTask(@PathVariable String type,
                                              @PathVariable Long id,
+                                             @RequestParam(required = false) String format,
                                              @ApiIgnore @CurrentUser User user,
                                              @Valid @RequestBody(required = false) DownloadViewExecuteParam[] params,
                                              HttpServletRequest request) {
+        ExportFormatEnum exportFormat = ExportFormatEnum.getExportFormat(format);
+        if (exportFormat == null) {
+            ResultMap resultMap = new ResultMap(tokenUtils).failAndRefreshToken(request).message("Invalid export format");
+            return ResponseEntity.status(resultMap.getCode()).body(resultMap);
+        }
         List<DownloadViewExecuteParam> downloadViewExecuteParams = Arrays.asList(params);
-        boolean rst = downloadService.submit(DownloadType.getDownloadType(type), id, user, downloadViewExecuteParams);
+        boolean rst = downloadService.submit(DownloadType.getDownloadType(type), id, user, downloadViewExecuteParams, exportFormat);
         return ResponseEntity.ok(rst ? new ResultMap(tokenUtils).successAndRefreshToken(request).payload(null) :
                 new ResultMap(tokenUtils).failAndRefreshToken(request).payload(null));
     }
@@ -131,11 +138,17 @@ public class DownloadController extends BaseController {
                                                   @RequestParam(required = false) String password,
                                                   @PathVariable(name = "uuid") String uuid,
                                                   @PathVariable(name = "type") String type,
+                                                  @RequestParam(required = false) String format,
                                                   @ApiIgnore @CurrentUser User user,
                                                   @Valid @RequestBody(required = false) DownloadViewExecuteParam[] params) {
 
+        ExportFormatEnum exportFormat = ExportFormatEnum.getExportFormat(format);
+        if (exportFormat == null) {
+            ResultMap resultMap = new ResultMap().fail().message("Invalid export format");
+            return ResponseEntity.status(resultMap.getCode()).body(resultMap);
+        }
         List<DownloadViewExecuteParam> downloadViewExecuteParams = Arrays.asList(params);
-        boolean rst = shareDownloadService.submit(DownloadType.getDownloadType(type), uuid, downloadViewExecuteParams);
+        boolean rst = shareDownloadService.submit(DownloadType.getDownloadType(type), uuid, downloadViewExecuteParams, exportFormat);
         return ResponseEntity.ok(rst ? new ResultMap().success() : new ResultMap().fail());
     }
 
@@ -151,7 +164,7 @@ public class DownloadController extends BaseController {
         ShareDownloadRecord record = shareDownloadService.downloadById(id, uuid);
         FileInputStream is = null;
         try {
-            encodeFileName(request, response, record.getName() + FileTypeEnum.XLSX.getFormat());
+            encodeFileName(request, response, record.getName() + FileTypeEnum.ofPath(record.getPath()).getFormat());
             is = new FileInputStream(new File(record.getPath()));
             Streams.copy(is, response.getOutputStream(), true);
         } catch (Exception e) {
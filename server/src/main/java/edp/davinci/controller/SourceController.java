@@ -46,6 +46,7 @@ import springfox.documentation.annotations.ApiIgnore;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 
 @Api(value = "/sources", tags = "sources", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
 @ApiResponses(@ApiResponse(code = 404, message = "sources not found"))
@@ -101,6 +102,28 @@ public class SourceController extends BaseController {
     }
 
 
+    /**
+     * 获取source健康状况
+     *
+     * @param id
+     * @param user
+     * @param request
+     * @return
+     */
+    @ApiOperation(value = "get source health")
+    @GetMapping("/{id}/health")
+    public ResponseEntity getSourceHealth(@PathVariable Long id,
+                                          @ApiIgnore @CurrentUser User user,
+                                          HttpServletRequest request) {
+        if (invalidId(id)) {
+            ResultMap resultMap = new ResultMap(tokenUtils).failAndRefreshToken(request).message("Invalid source id");
+            return ResponseEntity.status(resultMap.getCode()).body(resultMap);
+        }
+        Map<String, Object> health = sourceService.getSourceHealth(id, user);
+        return ResponseEntity.ok(new ResultMap(tokenUtils).successAndRefreshToken(request).payload(health));
+    }
+
+
     /**
      * 创建source
      *
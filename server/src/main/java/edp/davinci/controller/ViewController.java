@@ -25,6 +25,7 @@ import edp.core.model.PaginateWithQueryColumns;
 import edp.davinci.common.controller.BaseController;
 import edp.davinci.core.common.Constants;
 import edp.davinci.core.common.ResultMap;
+import edp.davinci.core.common.StreamResultWriter;
 import edp.davinci.core.utils.DacChannelUtil;
 import edp.davinci.dto.viewDto.*;
 import edp.davinci.model.DacChannel;
@@ -43,7 +44,9 @@ import org.springframework.web.bind.annotation.*;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
@@ -245,6 +248,65 @@ public class ViewController extends BaseController {
     }
 
 
+    /**
+     * 流式获取当前view对应的源数据，结果逐行写出
+     *
+     * @param id
+     * @param executeParam
+     * @param user
+     * @param request
+     * @param response
+     * @return
+     */
+    @ApiOperation(value = "get data by stream")
+    @PostMapping(value = "/{id}/getdata/stream", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getDataByStream(@PathVariable Long id,
+                                          @RequestBody(required = false) ViewExecuteParam executeParam,
+                                          @ApiIgnore @CurrentUser User user,
+                                          HttpServletRequest request,
+                                          HttpServletResponse response) throws IOException {
+        if (invalidId(id)) {
+            ResultMap resultMap = new ResultMap(tokenUtils).failAndRefreshToken(request).message("Invalid view id");
+            return ResponseEntity.status(resultMap.getCode()).body(resultMap);
+        }
+
+        StreamResultWriter writer = new StreamResultWriter(response, new ResultMap(tokenUtils).successAndRefreshToken(request));
+        try {
+            viewService.getDataByStream(id, executeParam, user, writer);
+        } catch (RuntimeException e) {
+            // 尚未输出时按普通异常响应，否则写入终止标记
+            if (!writer.fail(e)) {
+                throw e;
+            }
+            log.error("Get data by stream error: {}", e.getMessage());
+        } finally {
+            writer.close();
+        }
+        return null;
+    }
+
+
+    /**
+     * 取消查询，requestId 为发起查询时请求头 X-Request-Id 的值
+     *
+     * @param requestId
+     * @param user
+     * @param request
+     * @return
+     */
+    @ApiOperation(value = "cancel query")
+    @PostMapping("/query/{requestId}/cancel")
+    public ResponseEntity cancelQuery(@PathVariable String requestId,
+                                      @ApiIgnore @CurrentUser User user,
+                                      HttpServletRequest request) {
+        if (!viewService.cancelQuery(requestId, user)) {
+            ResultMap resultMap = new ResultMap(tokenUtils).failAndRefreshToken(request).message("Query is not found or has finished");
+            return ResponseEntity.status(resultMap.getCode()).body(resultMap);
+        }
+        return ResponseEntity.ok(new ResultMap(tokenUtils).successAndRefreshToken(request));
+    }
+
+
     @ApiOperation(value = "get distinct value")
     @PostMapping(value = "/{id}/getdistinctvalue", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity getDistinctValue(@PathVariable Long id,
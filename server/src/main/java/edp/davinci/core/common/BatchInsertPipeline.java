@@ -0,0 +1,254 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.common;
+
+import edp.core.exception.ServerException;
+import edp.core.model.QueryColumn;
+import edp.core.utils.SqlUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 上传数据批量插入管道
+ * <p>
+ * 解析线程按 batchSize 组装批次放入有界队列，队列满时阻塞解析线程；
+ * 批次由 BulkLoadScheduler 的共享线程池按数据源限流、在多个上传任务间轮转写入
+ */
+@Slf4j
+public class BatchInsertPipeline implements Closeable {
+
+    private static final long WAIT_MILLIS = 500L;
+
+    private static final long PROGRESS_LOG_MILLIS = 10000L;
+
+    private final BulkLoadScheduler scheduler;
+
+    @Getter
+    private final String sourceKey;
+
+    @Getter
+    private final String name;
+
+    private final SqlUtils sqlUtils;
+
+    private final String sql;
+
+    private final Set<QueryColumn> headers;
+
+    private final int batchSize;
+
+    private final BlockingQueue<List<Map<String, Object>>> queue;
+
+    /**
+     * 已入队但尚未写完的批次数
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final AtomicLong queuedRows = new AtomicLong();
+
+    private final AtomicLong insertedRows = new AtomicLong();
+
+    private final AtomicLong insertedBatches = new AtomicLong();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long lastProgressTime = startTime;
+
+    private List<Map<String, Object>> batch;
+
+    private volatile boolean finished = false;
+
+    BatchInsertPipeline(BulkLoadScheduler scheduler, String sourceKey, String name, SqlUtils sqlUtils,
+                        String sql, Set<QueryColumn> headers, int batchSize, int queueCapacity) {
+        this.scheduler = scheduler;
+        this.sourceKey = sourceKey;
+        this.name = name;
+        this.sqlUtils = sqlUtils;
+        this.sql = sql;
+        this.headers = headers;
+        this.batchSize = Math.max(batchSize, 1);
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        this.batch = new ArrayList<>(this.batchSize);
+    }
+
+    /**
+     * 追加一行，批次已满时放入队列，队列满时阻塞解析线程
+     *
+     * @param row
+     * @throws ServerException
+     */
+    public void add(Map<String, Object> row) throws ServerException {
+        checkFailure();
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            put(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * 提交剩余数据并等待全部写入完成
+     *
+     * @return 插入行数
+     * @throws ServerException
+     */
+    public long finish() throws ServerException {
+        if (finished) {
+            return insertedRows.get();
+        }
+        try {
+            if (!batch.isEmpty()) {
+                put(batch);
+                batch = null;
+            }
+            synchronized (this) {
+                while (pending.get() > 0 && null == failure.get()) {
+                    wait(WAIT_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerException(e.getMessage());
+        }
+        checkFailure();
+        finished = true;
+        scheduler.unregister(this);
+        log.info("Bulk load {} finished: {}", name, getStats());
+        return insertedRows.get();
+    }
+
+    /**
+     * 未正常结束时丢弃未写入的批次
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            failure.compareAndSet(null, new ServerException("Data upload aborted"));
+            discardQueued();
+            scheduler.unregister(this);
+        }
+    }
+
+    /**
+     * 取出一个待写入批次，由调度线程调用
+     */
+    List<Map<String, Object>> poll() {
+        if (null != failure.get()) {
+            discardQueued();
+            return null;
+        }
+        return queue.poll();
+    }
+
+    /**
+     * 写入一个批次，由共享线程池调用
+     */
+    void write(List<Map<String, Object>> rows) {
+        try {
+            if (null == failure.get()) {
+                sqlUtils.executeBatch(sql, headers, rows);
+                insertedRows.addAndGet(rows.size());
+                insertedBatches.incrementAndGet();
+                logProgress();
+            }
+        } catch (Throwable e) {
+            log.error("Bulk load {} batch insert failed: {}", name, e.getMessage());
+            failure.compareAndSet(null, e);
+        } finally {
+            release(1);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1L);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("source", sourceKey);
+        stats.put("queuedRows", queuedRows.get());
+        stats.put("insertedRows", insertedRows.get());
+        stats.put("insertedBatches", insertedBatches.get());
+        stats.put("pendingBatches", pending.get());
+        stats.put("elapsedMillis", elapsed);
+        stats.put("rowsPerSecond", insertedRows.get() * 1000L / elapsed);
+        stats.put("failed", null != failure.get());
+        return stats;
+    }
+
+    private void put(List<Map<String, Object>> rows) throws ServerException {
+        pending.incrementAndGet();
+        try {
+            while (!queue.offer(rows, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            release(1);
+            Thread.currentThread().interrupt();
+            throw new ServerException(e.getMessage());
+        } catch (ServerException e) {
+            release(1);
+            throw e;
+        }
+        queuedRows.addAndGet(rows.size());
+        scheduler.dispatch(this);
+    }
+
+    private void discardQueued() {
+        List<List<Map<String, Object>>> discarded = new ArrayList<>();
+        queue.drainTo(discarded);
+        if (!discarded.isEmpty()) {
+            release(discarded.size());
+        }
+    }
+
+    private void release(int batches) {
+        if (pending.addAndGet(-batches) <= 0 || null != failure.get()) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void logProgress() {
+        long now = System.currentTimeMillis();
+        if (now - lastProgressTime >= PROGRESS_LOG_MILLIS) {
+            lastProgressTime = now;
+            log.info("Bulk load {} progress: {}", name, getStats());
+        }
+    }
+
+    private void checkFailure() throws ServerException {
+        Throwable e = failure.get();
+        if (null != e) {
+            throw new ServerException(e.getMessage());
+        }
+    }
+}
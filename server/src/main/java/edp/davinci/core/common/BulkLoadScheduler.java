@@ -0,0 +1,264 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edp.core.model.QueryColumn;
+import edp.core.utils.SqlUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 数据上传批量写入调度
+ * <p>
+ * 所有上传共享一个线程池；每个数据源同时执行的写入批次与 LOAD DATA 导入数之和不超过 per-source-concurrency
+ * （默认该数据源连接池最大连接数的一半，为同数据源的查询保留连接），同一数据源的多个上传按批次轮转写入
+ */
+@Slf4j
+@Component
+public class BulkLoadScheduler {
+
+    @Value("${source.upload.threads:8}")
+    private int threads;
+
+    @Value("${source.upload.per-source-concurrency:0}")
+    private int perSourceConcurrency;
+
+    @Value("${source.upload.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${source.upload.queue-capacity:8}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("bulk-load-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 创建上传任务的批量插入管道
+     *
+     * @param sourceKey 数据源标识，同一标识共享并发限额
+     * @param name      任务名称，用于日志及统计
+     * @param sqlUtils
+     * @param sql
+     * @param headers
+     * @return
+     */
+    public BatchInsertPipeline open(String sourceKey, String name, SqlUtils sqlUtils, String sql, Set<QueryColumn> headers) {
+        BatchInsertPipeline pipeline = new BatchInsertPipeline(this, sourceKey, name, sqlUtils, sql, headers,
+                batchSize, queueCapacity);
+        Lane lane = getLane(sourceKey, sqlUtils);
+        synchronized (lane) {
+            lane.pipelines.addLast(pipeline);
+        }
+        return pipeline;
+    }
+
+    /**
+     * 创建通过 LOAD DATA LOCAL INFILE 导入的上传任务，导入期间占用数据源的一个并发名额
+     *
+     * @param sourceKey
+     * @param name
+     * @param sqlUtils
+     * @param sql
+     * @param headers
+     * @return
+     */
+    public LocalInfileLoader openLocalInfile(String sourceKey, String name, SqlUtils sqlUtils, String sql, Set<QueryColumn> headers) {
+        LocalInfileLoader loader = new LocalInfileLoader(this, sourceKey, name, sqlUtils, sql, headers);
+        Lane lane = getLane(sourceKey, sqlUtils);
+        synchronized (lane) {
+            lane.loaders.add(loader);
+        }
+        return loader;
+    }
+
+    /**
+     * 提交独占一个数据源并发名额的任务，与批量插入的批次共用数据源限额，名额不足时排队
+     */
+    <T> Future<T> submit(String sourceKey, SqlUtils sqlUtils, Callable<T> task) {
+        Lane lane = getLane(sourceKey, sqlUtils);
+        FutureTask<T> future = new FutureTask<>(task);
+        synchronized (lane) {
+            lane.tasks.addLast(future);
+        }
+        dispatch(lane);
+        return future;
+    }
+
+    void unregister(BatchInsertPipeline pipeline) {
+        Lane lane = lanes.get(pipeline.getSourceKey());
+        if (null != lane) {
+            synchronized (lane) {
+                lane.pipelines.remove(pipeline);
+            }
+        }
+    }
+
+    void unregister(String sourceKey, LocalInfileLoader loader) {
+        Lane lane = lanes.get(sourceKey);
+        if (null != lane) {
+            synchronized (lane) {
+                lane.loaders.remove(loader);
+            }
+        }
+    }
+
+    /**
+     * 数据源限额随数据源配置变化，每次创建上传任务时更新
+     */
+    private Lane getLane(String sourceKey, SqlUtils sqlUtils) {
+        Lane lane = lanes.computeIfAbsent(sourceKey, key -> new Lane());
+        synchronized (lane) {
+            lane.limit = getSourceConcurrency(sqlUtils);
+        }
+        return lane;
+    }
+
+    /**
+     * 在数据源限额内，从该数据源的上传任务中轮流取出批次提交到线程池
+     *
+     * @param pipeline
+     */
+    void dispatch(BatchInsertPipeline pipeline) {
+        Lane lane = lanes.get(pipeline.getSourceKey());
+        if (null != lane) {
+            dispatch(lane);
+        }
+    }
+
+    private void dispatch(Lane lane) {
+        synchronized (lane) {
+            while (lane.running < lane.limit) {
+                // 独占任务（LOAD DATA）优先，其次轮流取各上传任务的批次
+                Runnable work = lane.tasks.pollFirst();
+                if (null == work) {
+                    BatchInsertPipeline next = null;
+                    List<Map<String, Object>> rows = null;
+                    for (int i = 0; i < lane.pipelines.size() && null == rows; i++) {
+                        next = lane.pipelines.pollFirst();
+                        lane.pipelines.addLast(next);
+                        rows = next.poll();
+                    }
+                    if (null == rows) {
+                        return;
+                    }
+                    BatchInsertPipeline pipeline = next;
+                    List<Map<String, Object>> batch = rows;
+                    work = () -> pipeline.write(batch);
+                }
+
+                lane.running++;
+                Runnable job = work;
+                executor.execute(() -> {
+                    try {
+                        job.run();
+                    } finally {
+                        synchronized (lane) {
+                            lane.running--;
+                        }
+                        dispatch(lane);
+                    }
+                });
+            }
+        }
+    }
+
+    private int getSourceConcurrency(SqlUtils sqlUtils) {
+        if (perSourceConcurrency > 0) {
+            return perSourceConcurrency;
+        }
+        return Math.max(1, sqlUtils.getMaxActive() / 2);
+    }
+
+    /**
+     * 获取调度统计信息，包括各数据源进行中的上传任务进度
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("completed", executor.getCompletedTaskCount());
+        List<Map<String, Object>> sources = new ArrayList<>();
+        lanes.forEach((key, lane) -> sources.add(getStats(key, lane)));
+        stats.put("sources", sources);
+        return stats;
+    }
+
+    /**
+     * 获取指定数据源进行中的上传任务进度，没有上传任务时返回 null
+     *
+     * @param sourceKey
+     * @return
+     */
+    public Map<String, Object> getStats(String sourceKey) {
+        Lane lane = lanes.get(sourceKey);
+        return null == lane ? null : getStats(sourceKey, lane);
+    }
+
+    private Map<String, Object> getStats(String sourceKey, Lane lane) {
+        Map<String, Object> source = new LinkedHashMap<>();
+        List<Map<String, Object>> uploads = new ArrayList<>();
+        synchronized (lane) {
+            source.put("source", sourceKey);
+            source.put("limit", lane.limit);
+            source.put("running", lane.running);
+            source.put("queuedTasks", lane.tasks.size());
+            lane.pipelines.forEach(pipeline -> uploads.add(pipeline.getStats()));
+            lane.loaders.forEach(loader -> uploads.add(loader.getStats()));
+        }
+        source.put("uploads", uploads);
+        return source;
+    }
+
+    private static class Lane {
+
+        private int limit = 1;
+
+        private final Deque<BatchInsertPipeline> pipelines = new ArrayDeque<>();
+
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        private final Set<LocalInfileLoader> loaders = new LinkedHashSet<>();
+
+        private int running = 0;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.common;
+
+import edp.core.exception.ServerException;
+import edp.core.model.QueryColumn;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流式解析上传文件的回调，数据行不在内存中累积
+ */
+public interface DataUploadHandler {
+
+    /**
+     * 解析出列名及类型后、第一行数据之前调用
+     *
+     * @param headers
+     * @throws ServerException
+     */
+    void onHeaders(Set<QueryColumn> headers) throws ServerException;
+
+    /**
+     * 每解析一行数据调用一次，row 为新建对象，可被回调方持有
+     *
+     * @param row
+     * @throws ServerException
+     */
+    void onRow(Map<String, Object> row) throws ServerException;
+}
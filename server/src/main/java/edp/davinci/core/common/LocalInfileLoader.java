@@ -0,0 +1,215 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.common;
+
+import edp.core.common.jdbc.LoadDataRowWriter;
+import edp.core.exception.ServerException;
+import edp.core.model.QueryColumn;
+import edp.core.utils.FileUtils;
+import edp.core.utils.SqlUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 通过 MySQL LOAD DATA LOCAL INFILE 导入上传数据
+ * <p>
+ * 解析线程将行写为 LOAD DATA 文本格式写入管道，导入线程从管道读取并发送给数据库，数据不落盘
+ */
+@Slf4j
+public class LocalInfileLoader implements Closeable {
+
+    private static final int PIPE_BUFFER_SIZE = 1024 * 1024;
+
+    private final BulkLoadScheduler scheduler;
+
+    private final String sourceKey;
+
+    private final String name;
+
+    private final LoadDataRowWriter rowWriter;
+
+    private final PipedInputStream inputStream;
+
+    private final AbortableInputStream loadStream;
+
+    private final Writer writer;
+
+    private final Future<Long> future;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long writtenRows = 0L;
+
+    private volatile boolean finished = false;
+
+    LocalInfileLoader(BulkLoadScheduler scheduler, String sourceKey, String name, SqlUtils sqlUtils,
+                      String sql, Set<QueryColumn> headers) throws ServerException {
+        this.scheduler = scheduler;
+        this.sourceKey = sourceKey;
+        this.name = name;
+        this.rowWriter = new LoadDataRowWriter(headers);
+        try {
+            this.inputStream = new PipedInputStream(PIPE_BUFFER_SIZE);
+            this.loadStream = new AbortableInputStream(inputStream);
+            this.writer = new BufferedWriter(new OutputStreamWriter(new PipedOutputStream(inputStream), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ServerException(e.getMessage());
+        }
+        this.future = scheduler.submit(sourceKey, sqlUtils, () -> {
+            try {
+                return sqlUtils.loadDataLocalInfile(sql, loadStream);
+            } finally {
+                FileUtils.closeCloseable(inputStream);
+            }
+        });
+    }
+
+    public void add(Map<String, Object> row) throws ServerException {
+        try {
+            rowWriter.write(writer, row);
+            writtenRows++;
+        } catch (IOException e) {
+            throw loadFailure(e);
+        } catch (ServerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServerException(e.getMessage());
+        }
+    }
+
+    /**
+     * 结束写入并等待导入完成
+     *
+     * @return 导入行数
+     * @throws ServerException
+     */
+    public long finish() throws ServerException {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw loadFailure(e);
+        }
+        try {
+            long rows = future.get();
+            finished = true;
+            scheduler.unregister(sourceKey, this);
+            log.info("Load data {} finished: {} rows written, {} rows loaded in {} ms", name, writtenRows, rows,
+                    System.currentTimeMillis() - startTime);
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new ServerException(e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 未正常结束时中止导入；先标记中止再关闭管道，保证导入线程读到的是异常而不是流结束，已发送的数据随事务回滚
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            loadStream.abort();
+            // 先关闭读端，避免写端在已满的管道上阻塞
+            FileUtils.closeCloseable(inputStream);
+            FileUtils.closeCloseable(writer);
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.info("Load data {} aborted: {}", name, e.getCause().getMessage());
+            }
+        }
+        scheduler.unregister(sourceKey, this);
+    }
+
+    public Map<String, Object> getStats() {
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1L);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("source", sourceKey);
+        stats.put("mode", "load-data");
+        stats.put("writtenRows", writtenRows);
+        stats.put("elapsedMillis", elapsed);
+        stats.put("rowsPerSecond", writtenRows * 1000L / elapsed);
+        stats.put("finished", finished);
+        return stats;
+    }
+
+    /**
+     * 管道写入失败通常是导入线程已出错，优先返回导入线程的异常
+     */
+    private ServerException loadFailure(IOException e) {
+        if (future.isDone()) {
+            try {
+                future.get();
+            } catch (ExecutionException ee) {
+                return new ServerException(ee.getCause().getMessage());
+            } catch (Exception ignored) {
+            }
+        }
+        return new ServerException(e.getMessage());
+    }
+
+    private static class AbortableInputStream extends FilterInputStream {
+
+        private volatile boolean aborted = false;
+
+        AbortableInputStream(InputStream in) {
+            super(in);
+        }
+
+        void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkAborted();
+            int b = super.read();
+            checkAborted();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkAborted();
+            int n = super.read(b, off, len);
+            checkAborted();
+            return n;
+        }
+
+        private void checkAborted() throws IOException {
+            if (aborted) {
+                throw new IOException("Data upload aborted");
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.common;
+
+import edp.core.common.jdbc.JdbcDataSource;
+import edp.core.exception.ServerException;
+import edp.core.model.Dict;
+import edp.core.utils.CollectionUtils;
+import edp.davinci.core.enums.QueryLaneEnum;
+import edp.davinci.model.Source;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 数据源查询准入控制
+ * <p>
+ * 每个数据源同时执行的查询数不超过其连接池的 max-active，超出的查询按通道排队，
+ * 空出名额时按通道权重加权公平地放行（stride 调度）；导出与定时任务等后台通道合计最多占用 background-share 比例的名额，
+ * 为看板交互查询保留连接。队列已满或等待超时时直接拒绝，不再阻塞在连接池上
+ */
+@Slf4j
+@Component
+public class SourceQueryScheduler {
+
+    @Value("${source.query.admission-enabled:true}")
+    private boolean enabled;
+
+    @Value("${source.query.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${source.query.max-wait-ms:10000}")
+    private long maxWaitMillis;
+
+    @Value("${source.query.background-max-wait-ms:1800000}")
+    private long backgroundMaxWaitMillis;
+
+    @Value("${source.query.background-share:0.5}")
+    private double backgroundShare;
+
+    @Autowired
+    private JdbcDataSource jdbcDataSource;
+
+    private final Map<String, SourceLanes> sources = new ConcurrentHashMap<>();
+
+    /**
+     * 未启用准入控制时 tryAcquire 返回的空名额
+     */
+    public static final Permit NO_PERMIT = new Permit(null);
+
+    /**
+     * 在数据源的查询名额内执行查询，调用线程排队等待
+     *
+     * @param source
+     * @param lane
+     * @param query
+     * @param <T>
+     * @return
+     * @throws Exception
+     */
+    public <T> T execute(Source source, QueryLaneEnum lane, Callable<T> query) throws Exception {
+        if (!enabled || null == source || null == source.getId()) {
+            return query.call();
+        }
+
+        SourceLanes lanes = getLanes(source);
+        lanes.acquire(lane);
+        try {
+            return query.call();
+        } finally {
+            lanes.release(lane);
+        }
+    }
+
+    /**
+     * 不排队地占用一个查询名额，用于可退回串行或跳过的附属查询（如统计总数）
+     *
+     * @param source
+     * @param lane
+     * @return 名额，需在查询结束后 release；没有空闲名额时返回 null
+     */
+    public Permit tryAcquire(Source source, QueryLaneEnum lane) {
+        if (!enabled || null == source || null == source.getId()) {
+            return NO_PERMIT;
+        }
+
+        SourceLanes lanes = getLanes(source);
+        return lanes.tryAcquire(lane) ? new Permit(() -> lanes.release(lane)) : null;
+    }
+
+    /**
+     * 获取各数据源的执行及排队情况
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        sources.forEach((key, lanes) -> stats.put(key, lanes.getStats()));
+        return stats;
+    }
+
+    /**
+     * 获取单个数据源的执行及排队情况，尚无查询时返回 null
+     *
+     * @param sourceId
+     * @return
+     */
+    public Map<String, Object> getStats(Long sourceId) {
+        SourceLanes lanes = sources.get(String.valueOf(sourceId));
+        return null == lanes ? null : lanes.getStats();
+    }
+
+    /**
+     * 数据源删除后移除空闲的调度状态，有查询执行或排队时保留；数据源更新无需移除，名额在下次查询时按新配置更新
+     *
+     * @param sourceId
+     */
+    public void evict(Long sourceId) {
+        String key = String.valueOf(sourceId);
+        sources.computeIfPresent(key, (k, lanes) -> lanes.isIdle() ? null : lanes);
+    }
+
+    /**
+     * 名额随数据源配置（davinci.max-active）变化，每次查询时按当前配置更新
+     */
+    private SourceLanes getLanes(Source source) {
+        int limit = getSourceLimit(source);
+        SourceLanes lanes = sources.computeIfAbsent(String.valueOf(source.getId()), key -> new SourceLanes(key, limit));
+        lanes.updateLimit(limit);
+        return lanes;
+    }
+
+    private int getSourceLimit(Source source) {
+        int limit = jdbcDataSource.getMaxActive();
+        List<Dict> properties = source.getProperties();
+        if (!CollectionUtils.isEmpty(properties)) {
+            for (Dict dict : properties) {
+                if ("davinci.max-active".equalsIgnoreCase(dict.getKey())) {
+                    try {
+                        limit = Integer.parseInt(dict.getValue().trim());
+                    } catch (NumberFormatException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        return Math.max(1, limit);
+    }
+
+    private final class SourceLanes {
+
+        private final String key;
+
+        private int limit;
+
+        private int backgroundLimit;
+
+        private int running = 0;
+
+        private int backgroundRunning = 0;
+
+        // stride 调度的虚拟时间，通道从空闲变为排队时追平，避免空闲期积累额度
+        private double virtualTime = 0;
+
+        private final Map<QueryLaneEnum, Deque<Ticket>> waiting = new EnumMap<>(QueryLaneEnum.class);
+
+        private final Map<QueryLaneEnum, Double> pass = new EnumMap<>(QueryLaneEnum.class);
+
+        private long rejected = 0;
+
+        SourceLanes(String key, int limit) {
+            this.key = key;
+            this.limit = limit;
+            this.backgroundLimit = Math.max(1, (int) Math.floor(limit * backgroundShare));
+            for (QueryLaneEnum lane : QueryLaneEnum.values()) {
+                waiting.put(lane, new ArrayDeque<>());
+                pass.put(lane, 0d);
+            }
+        }
+
+        synchronized void updateLimit(int limit) {
+            if (this.limit == limit) {
+                return;
+            }
+            log.info("Source({}) query limit changed: {} -> {}", key, this.limit, limit);
+            this.limit = limit;
+            this.backgroundLimit = Math.max(1, (int) Math.floor(limit * backgroundShare));
+            dispatch();
+        }
+
+        synchronized boolean isIdle() {
+            return running == 0 && waiting.values().stream().allMatch(Deque::isEmpty);
+        }
+
+        synchronized boolean tryAcquire(QueryLaneEnum lane) {
+            if (waiting.get(lane).isEmpty() && canRun(lane)) {
+                advance(lane);
+                start(lane);
+                return true;
+            }
+            return false;
+        }
+
+        void acquire(QueryLaneEnum lane) throws InterruptedException {
+            Ticket ticket;
+            synchronized (this) {
+                Deque<Ticket> queue = waiting.get(lane);
+                if (queue.isEmpty() && canRun(lane)) {
+                    advance(lane);
+                    start(lane);
+                    return;
+                }
+                if (queue.size() >= queueCapacity) {
+                    rejected++;
+                    throw busy(lane, "queue is full");
+                }
+                if (queue.isEmpty()) {
+                    pass.put(lane, Math.max(pass.get(lane), virtualTime));
+                }
+                ticket = new Ticket();
+                queue.addLast(ticket);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lane.isLongWait() ? backgroundMaxWaitMillis : maxWaitMillis);
+            synchronized (this) {
+                try {
+                    while (!ticket.granted) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            waiting.get(lane).remove(ticket);
+                            rejected++;
+                            throw busy(lane, "waited too long");
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    if (ticket.granted) {
+                        release(lane);
+                    } else {
+                        waiting.get(lane).remove(ticket);
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        synchronized void release(QueryLaneEnum lane) {
+            running--;
+            if (lane.isBackground()) {
+                backgroundRunning--;
+            }
+            dispatch();
+        }
+
+        private void dispatch() {
+            boolean granted = false;
+            while (running < limit) {
+                QueryLaneEnum next = null;
+                for (QueryLaneEnum lane : QueryLaneEnum.values()) {
+                    if (waiting.get(lane).isEmpty() || !canRun(lane)) {
+                        continue;
+                    }
+                    if (null == next || pass.get(lane) < pass.get(next)) {
+                        next = lane;
+                    }
+                }
+                if (null == next) {
+                    break;
+                }
+                waiting.get(next).pollFirst().granted = true;
+                advance(next);
+                start(next);
+                granted = true;
+            }
+            if (granted) {
+                notifyAll();
+            }
+        }
+
+        private boolean canRun(QueryLaneEnum lane) {
+            return running < limit && (!lane.isBackground() || backgroundRunning < backgroundLimit);
+        }
+
+        private void advance(QueryLaneEnum lane) {
+            double current = Math.max(pass.get(lane), virtualTime);
+            virtualTime = current;
+            pass.put(lane, current + 1d / lane.getWeight());
+        }
+
+        private void start(QueryLaneEnum lane) {
+            running++;
+            if (lane.isBackground()) {
+                backgroundRunning++;
+            }
+        }
+
+        private ServerException busy(QueryLaneEnum lane, String reason) {
+            log.warn("Source({}) query rejected, lane:{}, reason:{}, running:{}/{}", key, lane.getLane(), reason, running, limit);
+            return new ServerException("Source is busy (" + reason + "), too many " + lane.getLane()
+                    + " queries are running on it, please try again later");
+        }
+
+        synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", limit);
+            stats.put("backgroundLimit", backgroundLimit);
+            stats.put("running", running);
+            stats.put("backgroundRunning", backgroundRunning);
+            stats.put("rejected", rejected);
+            Map<String, Integer> queued = new LinkedHashMap<>();
+            waiting.forEach((lane, queue) -> queued.put(lane.getLane(), queue.size()));
+            stats.put("waiting", queued);
+            return stats;
+        }
+    }
+
+    private static final class Ticket {
+
+        private boolean granted = false;
+    }
+
+    /**
+     * tryAcquire 占用的名额，重复 release 无副作用
+     */
+    public static final class Permit {
+
+        private final Runnable releaser;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(Runnable releaser) {
+            this.releaser = releaser;
+        }
+
+        public void release() {
+            if (null != releaser && released.compareAndSet(false, true)) {
+                releaser.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.common;
+
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import edp.core.common.jdbc.ResultStreamHandler;
+import edp.core.model.QueryColumn;
+import edp.davinci.core.config.WebMvcConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将结果集逐行写入 HTTP 响应，输出结构与 ResultMap + Paginate 序列化结果一致
+ */
+@Slf4j
+public class StreamResultWriter implements ResultStreamHandler {
+
+    private static final int FLUSH_ROWS = 500;
+
+    private final HttpServletResponse response;
+
+    private final ResultMap resultMap;
+
+    private SerializeWriter out;
+
+    private JSONSerializer serializer;
+
+    private long rowCount = 0L;
+
+    private boolean completed = false;
+
+    private boolean failed = false;
+
+    public StreamResultWriter(HttpServletResponse response, ResultMap resultMap) {
+        this.response = response;
+        this.resultMap = resultMap;
+    }
+
+    @Override
+    public void onColumns(List<QueryColumn> columns) throws IOException {
+        open();
+        out.write("{\"header\":");
+        serializer.write(resultMap.get("header"));
+        out.write(",\"payload\":{\"columns\":");
+        serializer.write(columns);
+        out.write(",\"resultList\":[");
+        // 尽早输出首字节
+        out.flush();
+    }
+
+    @Override
+    public void onRow(Map<String, Object> row) throws IOException {
+        if (rowCount > 0L) {
+            out.write(',');
+        }
+        serializer.write(row);
+        if (++rowCount % FLUSH_ROWS == 0) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void onComplete(int pageNo, int pageSize, long totalCount, boolean countApproximate) throws IOException {
+        out.write("],\"pageNo\":");
+        out.writeInt(pageNo);
+        out.write(",\"pageSize\":");
+        out.writeInt(pageSize);
+        out.write(",\"totalCount\":");
+        out.writeLong(totalCount);
+        out.write(",\"countApproximate\":");
+        out.write(countApproximate ? "true" : "false");
+        out.write("}}");
+        out.flush();
+        completed = true;
+    }
+
+    /**
+     * 查询失败时调用；已开始输出时结束 resultList 并写入 error 字段作为终止标记，
+     * 客户端据此区分结果被截断与正常结束
+     *
+     * @param e
+     * @return 是否已开始输出，未开始时由调用方按普通异常响应
+     */
+    public boolean fail(Throwable e) {
+        failed = true;
+        if (null == out) {
+            return false;
+        }
+        if (!completed) {
+            try {
+                out.write("],\"error\":");
+                serializer.write(null == e.getMessage() ? e.toString() : e.getMessage());
+                out.write("}}");
+            } catch (Exception we) {
+                log.warn("Write stream error marker failed: {}", we.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 结束输出，未查询到结果时按普通响应输出
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (null == out) {
+            if (failed) {
+                return;
+            }
+            open();
+            serializer.write(resultMap);
+        }
+        out.close();
+    }
+
+    private void open() throws IOException {
+        response.setStatus(resultMap.getCode());
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        out = new SerializeWriter(response.getWriter(), WebMvcConfig.SERIALIZER_FEATURES);
+        serializer = new JSONSerializer(out);
+        serializer.addFilter(WebMvcConfig.VALUE_FILTER);
+    }
+}
@@ -29,6 +29,7 @@ import edp.davinci.core.inteceptor.AuthenticationInterceptor;
 import edp.davinci.core.inteceptor.CurrentPlatformMethodArgumentResolver;
 import edp.davinci.core.inteceptor.CurrentUserMethodArgumentResolver;
 import edp.davinci.core.inteceptor.PlatformAuthInterceptor;
+import edp.davinci.core.inteceptor.QueryCancelInterceptor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -49,6 +50,25 @@ import static edp.core.consts.Consts.EMPTY;
 @Configuration
 public class WebMvcConfig extends WebMvcConfigurationSupport {
 
+    /**
+     * 响应序列化特性，流式输出时复用
+     */
+    public static final SerializerFeature[] SERIALIZER_FEATURES = {
+            SerializerFeature.QuoteFieldNames,
+            SerializerFeature.WriteEnumUsingToString,
+            SerializerFeature.WriteMapNullValue,
+            SerializerFeature.WriteDateUseDateFormat,
+            SerializerFeature.DisableCircularReferenceDetect
+    };
+
+    public static final ValueFilter VALUE_FILTER = (o, s, source) -> {
+        if (null != source && (source instanceof Long || source instanceof BigInteger) && source.toString().length() > 15) {
+            return source.toString();
+        } else {
+            return null == source ? EMPTY : source;
+        }
+    };
+
     @Value("${file.userfiles-path}")
     private String filePath;
 
@@ -75,6 +95,16 @@ public class WebMvcConfig extends WebMvcConfigurationSupport {
         return new PlatformAuthInterceptor();
     }
 
+    /**
+     * 查询超时及取消拦截器
+     *
+     * @return
+     */
+    @Bean
+    public QueryCancelInterceptor queryCancelInterceptor() {
+        return new QueryCancelInterceptor();
+    }
+
     /**
      * CurrentUser 注解参数解析器
      *
@@ -127,6 +157,9 @@ public class WebMvcConfig extends WebMvcConfigurationSupport {
         registry.addInterceptor(platformAuthInterceptor())
                 .addPathPatterns(Constants.AUTH_API_PATH + "/**");
 
+        registry.addInterceptor(queryCancelInterceptor())
+                .addPathPatterns(Constants.BASE_API_PATH + "/**");
+
         super.addInterceptors(registry);
     }
 
@@ -149,18 +182,8 @@ public class WebMvcConfig extends WebMvcConfigurationSupport {
     protected void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
         FastJsonHttpMessageConverter fastConverter = new FastJsonHttpMessageConverter();
         FastJsonConfig fastJsonConfig = new FastJsonConfig();
-        fastJsonConfig.setSerializerFeatures(SerializerFeature.QuoteFieldNames,
-                SerializerFeature.WriteEnumUsingToString,
-                SerializerFeature.WriteMapNullValue,
-                SerializerFeature.WriteDateUseDateFormat,
-                SerializerFeature.DisableCircularReferenceDetect);
-        fastJsonConfig.setSerializeFilters((ValueFilter) (o, s, source) -> {
-            if (null != source && (source instanceof Long || source instanceof BigInteger) && source.toString().length() > 15) {
-                return source.toString();
-            } else {
-                return null == source ? EMPTY : source;
-            }
-        });
+        fastJsonConfig.setSerializerFeatures(SERIALIZER_FEATURES);
+        fastJsonConfig.setSerializeFilters(VALUE_FILTER);
 
         //处理中文乱码问题
         List<MediaType> fastMediaTypes = new ArrayList<>();
@@ -0,0 +1,95 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.enums;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 下载及定时邮件的导出格式
+ * xlsx 由 POI 生成工作簿，csv/tsv 直接从查询游标流式写入文本文件，可选 gzip 压缩
+ */
+public enum ExportFormatEnum {
+    XLSX("xlsx", FileTypeEnum.XLSX, FileTypeEnum.XLSX, ',', false),
+    CSV("csv", FileTypeEnum.CSV, FileTypeEnum.CSV, ',', false),
+    TSV("tsv", FileTypeEnum.TSV, FileTypeEnum.TSV, '\t', false),
+    CSV_GZ("csv.gz", FileTypeEnum.CSV_GZ, FileTypeEnum.CSV, ',', true),
+    TSV_GZ("tsv.gz", FileTypeEnum.TSV_GZ, FileTypeEnum.TSV, '\t', true);
+
+    private String format;
+
+    private FileTypeEnum fileType;
+
+    //多个 sheet 打包为 zip 时，每个条目的文件类型
+    private FileTypeEnum entryType;
+
+    private char delimiter;
+
+    private boolean gzip;
+
+    ExportFormatEnum(String format, FileTypeEnum fileType, FileTypeEnum entryType, char delimiter, boolean gzip) {
+        this.format = format;
+        this.fileType = fileType;
+        this.entryType = entryType;
+        this.delimiter = delimiter;
+        this.gzip = gzip;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public FileTypeEnum getFileType() {
+        return fileType;
+    }
+
+    public FileTypeEnum getEntryType() {
+        return entryType;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public boolean isDelimited() {
+        return this != XLSX;
+    }
+
+    /**
+     * 未指定时默认为 xlsx，无法识别时返回 null
+     *
+     * @param format
+     * @return
+     */
+    public static ExportFormatEnum getExportFormat(String format) {
+        if (StringUtils.isBlank(format)) {
+            return XLSX;
+        }
+        for (ExportFormatEnum em : ExportFormatEnum.values()) {
+            if (em.format.equalsIgnoreCase(format.trim())) {
+                return em;
+            }
+        }
+        return null;
+    }
+}
@@ -22,7 +22,11 @@ package edp.davinci.core.enums;
 public enum FileTypeEnum {
     XLSX("excel", ".xlsx"),
     XLS("excel", ".xls"),
-    CSV("csv", ".csv");
+    CSV("csv", ".csv"),
+    TSV("csv", ".tsv"),
+    CSV_GZ("csv", ".csv.gz"),
+    TSV_GZ("csv", ".tsv.gz"),
+    ZIP("csv", ".zip");
 
     private String type;
     private String format;
@@ -39,4 +43,24 @@ public enum FileTypeEnum {
         this.type = type;
         this.format = format;
     }
+
+    /**
+     * 根据文件路径后缀获取文件类型，无法识别时按 xlsx 处理
+     *
+     * @param path
+     * @return
+     */
+    public static FileTypeEnum ofPath(String path) {
+        if (path == null) {
+            return XLSX;
+        }
+        String lowerPath = path.toLowerCase();
+        FileTypeEnum matched = null;
+        for (FileTypeEnum fileType : values()) {
+            if (lowerPath.endsWith(fileType.format) && (matched == null || fileType.format.length() > matched.format.length())) {
+                matched = fileType;
+            }
+        }
+        return matched == null ? XLSX : matched;
+    }
 }
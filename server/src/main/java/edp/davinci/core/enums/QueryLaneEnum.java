@@ -0,0 +1,71 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.enums;
+
+/**
+ * 数据源查询的优先级通道，weight 为加权公平调度的权重，background 通道共享受限的连接份额，
+ * longWait 通道排队时按 background-max-wait-ms 等待
+ */
+public enum QueryLaneEnum {
+
+    INTERACTIVE("interactive", 8, false, false),
+    CONTROL("control", 4, false, false),
+    /**
+     * 不分页的流式查询，结果写给客户端期间一直占用名额，计入后台份额，避免慢客户端占满看板查询的名额
+     */
+    STREAM("stream", 4, true, false),
+    EXPORT("export", 2, true, true),
+    SCHEDULE("schedule", 1, true, true),
+    /**
+     * async 模式下后台统计分页总数
+     */
+    COUNT("count", 1, true, true);
+
+    private String lane;
+
+    private int weight;
+
+    private boolean background;
+
+    private boolean longWait;
+
+    QueryLaneEnum(String lane, int weight, boolean background, boolean longWait) {
+        this.lane = lane;
+        this.weight = weight;
+        this.background = background;
+        this.longWait = longWait;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean isBackground() {
+        return background;
+    }
+
+    public boolean isLongWait() {
+        return longWait;
+    }
+}
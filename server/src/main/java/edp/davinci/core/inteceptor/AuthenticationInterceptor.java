@@ -28,6 +28,7 @@ import edp.core.utils.TokenUtils;
 import edp.davinci.core.common.Constants;
 import edp.davinci.core.common.ErrorMsg;
 import edp.davinci.core.common.ResultMap;
+import edp.davinci.core.service.AuthUserCache;
 import edp.davinci.model.User;
 import edp.davinci.service.UserService;
 import lombok.extern.slf4j.Slf4j;
@@ -49,6 +50,9 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthUserCache authUserCache;
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
 
@@ -73,8 +77,11 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
         AuthShare authShareMethod = method.getAnnotation(AuthShare.class);
         if (null != authShareMethod) {
             if (!StringUtils.isEmpty(token) && token.startsWith(Constants.TOKEN_PREFIX)) {
-                String username = tokenUtils.getUsername(token);
-                User user = userService.getByUsername(username);
+                User user = authUserCache.get(token);
+                if (null == user) {
+                    String username = tokenUtils.getUsername(token);
+                    user = userService.getByUsername(username);
+                }
                 request.setAttribute(Constants.CURRENT_USER, user);
             }
             return true;
@@ -88,6 +95,33 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
             response.getWriter().print(ErrorMsg.ERR_MSG_AUTHENTICATION);
             return false;
         }
+        User user = authUserCache.get(token);
+        if (null == user) {
+            user = verify(token, request, response);
+            if (null == user) {
+                return false;
+            }
+        }
+
+        if (!request.getServletPath().contains("/user/active") && !user.getActive()) {
+            if (request.getServletPath().contains("/user/sendmail")) {
+                request.setAttribute(Constants.CURRENT_USER, user);
+                return true;
+            }
+            log.info("Current user is not activated, username:{}", user.getUsername());
+            response.setStatus(HttpCodeEnum.FAIL.getCode());
+            ResultMap resultMap = new ResultMap(tokenUtils);
+            response.getWriter().print(JSONObject.toJSONString(resultMap.failAndRefreshToken(request).message("Account not active yet. Please check your email to activate your account")));
+            return false;
+        }
+        request.setAttribute(Constants.CURRENT_USER, user);
+        return true;
+    }
+
+    /**
+     * 查询并验证 token 用户，验证通过后放入缓存
+     */
+    private User verify(String token, HttpServletRequest request, HttpServletResponse response) throws Exception {
         String username = tokenUtils.getUsername(token);
         User user = userService.getByUsername(username);
         if (null == user) {
@@ -96,7 +130,7 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
             }
             response.setStatus(HttpCodeEnum.FORBIDDEN.getCode());
             response.getWriter().print(ErrorMsg.ERR_MSG_PERMISSION);
-            return false;
+            return null;
 
         }
         if (!tokenUtils.validateToken(token, user)) {
@@ -105,22 +139,11 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
             }
             response.setStatus(HttpCodeEnum.FORBIDDEN.getCode());
             response.getWriter().print("Invalid token ");
-            return false;
+            return null;
         }
 
-        if (!request.getServletPath().contains("/user/active") && !user.getActive()) {
-            if (request.getServletPath().contains("/user/sendmail")) {
-                request.setAttribute(Constants.CURRENT_USER, user);
-                return true;
-            }
-            log.info("Current user is not activated, username:{}", user.getUsername());
-            response.setStatus(HttpCodeEnum.FAIL.getCode());
-            ResultMap resultMap = new ResultMap(tokenUtils);
-            response.getWriter().print(JSONObject.toJSONString(resultMap.failAndRefreshToken(request).message("Account not active yet. Please check your email to activate your account")));
-            return false;
-        }
-        request.setAttribute(Constants.CURRENT_USER, user);
-        return true;
+        authUserCache.put(token, user, tokenUtils.getExpirationDate(token));
+        return user;
     }
 
     @Override
@@ -0,0 +1,68 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.inteceptor;
+
+import edp.core.common.jdbc.QueryCancelRegistry;
+import edp.davinci.core.common.Constants;
+import edp.davinci.model.User;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 查询取消拦截器
+ * 为每个请求建立查询范围，请求头 X-Request-Id 用于按 ID 取消查询，X-Query-Timeout（秒）用于缩短本次请求的查询超时
+ */
+public class QueryCancelInterceptor implements HandlerInterceptor {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    public static final String QUERY_TIMEOUT_HEADER = "X-Query-Timeout";
+
+    private static final String SCOPE_ATTRIBUTE = QueryCancelInterceptor.class.getName() + ".SCOPE";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String requestId = StringUtils.trimToNull(request.getHeader(REQUEST_ID_HEADER));
+
+        // 空值、非数字或超出 int 范围时不限制
+        int timeout = Math.max(NumberUtils.toInt(StringUtils.trim(request.getHeader(QUERY_TIMEOUT_HEADER)), 0), 0);
+
+        String owner = null;
+        Object user = request.getAttribute(Constants.CURRENT_USER);
+        if (user instanceof User) {
+            owner = String.valueOf(((User) user).getId());
+        }
+
+        request.setAttribute(SCOPE_ATTRIBUTE, QueryCancelRegistry.open(requestId, owner, timeout));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope instanceof QueryCancelRegistry.QueryScope) {
+            ((QueryCancelRegistry.QueryScope) scope).close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edp.core.utils.RedisUtils;
+import edp.davinci.core.model.RedisMessageEntity;
+import edp.davinci.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static edp.davinci.core.common.Constants.DAVINCI_TOPIC_CHANNEL;
+
+/**
+ * 已验证 token 与用户的本地缓存
+ * 用户信息或密码变更时按用户名失效，并通过 Redis 通知其他节点
+ */
+@Slf4j
+@Component
+public class AuthUserCache implements RedisMessageHandler {
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Value("${auth.user-cache.enable:true}")
+    private boolean enable;
+
+    @Value("${auth.user-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${auth.user-cache.expire-seconds:60}")
+    private long expireSeconds;
+
+    private Cache<String, Entry> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 获取 token 对应的已验证用户，返回副本以免请求间相互修改
+     *
+     * @param token
+     * @return
+     */
+    public User get(String token) {
+        if (!enable) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(token);
+        if (null == entry) {
+            return null;
+        }
+        if (entry.expireAt > 0 && entry.expireAt < System.currentTimeMillis()) {
+            cache.invalidate(token);
+            return null;
+        }
+        return copy(entry.user);
+    }
+
+    /**
+     * 缓存验证通过的 token 用户
+     *
+     * @param token
+     * @param user
+     * @param expiration token 超时时间，为空则仅受缓存 TTL 限制
+     */
+    public void put(String token, User user, Date expiration) {
+        if (!enable || null == user) {
+            return;
+        }
+        cache.put(token, new Entry(copy(user), null == expiration ? 0L : expiration.getTime()));
+    }
+
+    /**
+     * 失效本节点该用户的全部缓存
+     *
+     * @param username
+     */
+    public void invalidate(String username) {
+        if (null == username) {
+            return;
+        }
+        cache.asMap().values().removeIf(entry -> username.equals(entry.user.getUsername()));
+    }
+
+    /**
+     * 失效该用户的缓存并通知其他节点
+     *
+     * @param username
+     */
+    public void invalidateAndPublish(String username) {
+        invalidate(username);
+        if (null != username && redisUtils.isRedisEnable()) {
+            redisUtils.convertAndSend(DAVINCI_TOPIC_CHANNEL, new RedisMessageEntity(AuthUserCache.class, username, username));
+        }
+    }
+
+    @Override
+    public void handle(Object message, String flag) {
+        if (!(message instanceof String)) {
+            return;
+        }
+        log.debug("AuthUserCache received invalidate message, username({})", message);
+        invalidate((String) message);
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+
+    private static class Entry {
+
+        private final User user;
+
+        private final long expireAt;
+
+        private Entry(User user, long expireAt) {
+            this.user = user;
+            this.expireAt = expireAt;
+        }
+    }
+}
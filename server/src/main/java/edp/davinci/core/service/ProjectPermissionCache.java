@@ -0,0 +1,232 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edp.core.utils.RedisUtils;
+import edp.davinci.core.model.RedisMessageEntity;
+import edp.davinci.dto.projectDto.ProjectDetail;
+import edp.davinci.dto.projectDto.UserMaxProjectPermission;
+import edp.davinci.model.Organization;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static edp.davinci.core.common.Constants.DAVINCI_TOPIC_CHANNEL;
+
+/**
+ * project 权限解析缓存
+ * 缓存 project 详情（按 projectId）及用户在 project 上的组织角色、管理员关系和最大权限（按 userId + projectId），
+ * 由 project、organization、role 的变更显式失效，事务内的失效在提交后再执行一次，并通过 Redis 通知其他节点
+ */
+@Slf4j
+@Component
+public class ProjectPermissionCache implements RedisMessageHandler {
+
+    private static final String FLAG_PROJECT = "project";
+
+    private static final String FLAG_ORGANIZATION = "organization";
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Value("${auth.permission-cache.enable:true}")
+    private boolean enable;
+
+    @Value("${auth.permission-cache.max-size:20000}")
+    private long maxSize;
+
+    @Value("${auth.permission-cache.expire-seconds:300}")
+    private long expireSeconds;
+
+    private Cache<Long, ProjectDetail> projectCache;
+
+    private Cache<String, ProjectAccess> accessCache;
+
+    @PostConstruct
+    public void init() {
+        projectCache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+        accessCache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 获取 project 详情，返回副本以免调用方修改缓存内容
+     *
+     * @param projectId
+     * @param loader
+     * @return
+     */
+    public ProjectDetail getProjectDetail(Long projectId, Function<Long, ProjectDetail> loader) {
+        if (!enable) {
+            return loader.apply(projectId);
+        }
+        ProjectDetail projectDetail = projectCache.getIfPresent(projectId);
+        if (null == projectDetail) {
+            projectDetail = loader.apply(projectId);
+            if (null == projectDetail) {
+                return null;
+            }
+            projectCache.put(projectId, copy(projectDetail));
+            return projectDetail;
+        }
+        return copy(projectDetail);
+    }
+
+    /**
+     * 获取用户在 project 上的权限相关信息
+     *
+     * @param userId
+     * @param projectId
+     * @param loader
+     * @return
+     */
+    public ProjectAccess getAccess(Long userId, Long projectId, Supplier<ProjectAccess> loader) {
+        if (!enable) {
+            return loader.get();
+        }
+        String key = userId + ":" + projectId;
+        ProjectAccess access = accessCache.getIfPresent(key);
+        if (null == access) {
+            access = loader.get();
+            accessCache.put(key, access);
+        }
+        return access;
+    }
+
+    /**
+     * 失效 project 相关缓存
+     *
+     * @param projectId
+     */
+    public void evictProject(Long projectId) {
+        if (null == projectId) {
+            return;
+        }
+        evictAndPublish(FLAG_PROJECT, projectId);
+    }
+
+    /**
+     * 失效 organization 下所有 project 相关缓存
+     *
+     * @param orgId
+     */
+    public void evictOrganization(Long orgId) {
+        if (null == orgId) {
+            return;
+        }
+        evictAndPublish(FLAG_ORGANIZATION, orgId);
+    }
+
+    @Override
+    public void handle(Object message, String flag) {
+        if (!(message instanceof String)) {
+            return;
+        }
+        log.debug("ProjectPermissionCache received evict message, {}({})", flag, message);
+        evictLocal(flag, Long.valueOf((String) message));
+    }
+
+    private void evictAndPublish(String flag, Long id) {
+        evictLocal(flag, id);
+        // 事务提交前其他请求可能读到旧数据并重新缓存，提交后再失效一次
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictLocal(flag, id);
+                    publish(flag, id);
+                }
+            });
+        } else {
+            publish(flag, id);
+        }
+    }
+
+    private void evictLocal(String flag, Long id) {
+        if (FLAG_PROJECT.equals(flag)) {
+            projectCache.invalidate(id);
+            accessCache.asMap().values().removeIf(access -> id.equals(access.getProjectId()));
+        } else if (FLAG_ORGANIZATION.equals(flag)) {
+            projectCache.asMap().values().removeIf(project -> id.equals(project.getOrgId()));
+            accessCache.asMap().values().removeIf(access -> id.equals(access.getOrgId()));
+        }
+    }
+
+    private void publish(String flag, Long id) {
+        if (!redisUtils.isRedisEnable()) {
+            return;
+        }
+        try {
+            redisUtils.convertAndSend(DAVINCI_TOPIC_CHANNEL, new RedisMessageEntity(ProjectPermissionCache.class, String.valueOf(id), flag));
+        } catch (Exception e) {
+            log.warn("Publish project permission evict message error, {}({}): {}", flag, id, e.getMessage());
+        }
+    }
+
+    private static ProjectDetail copy(ProjectDetail projectDetail) {
+        ProjectDetail copy = new ProjectDetail();
+        BeanUtils.copyProperties(projectDetail, copy);
+        if (null != projectDetail.getOrganization()) {
+            Organization organization = new Organization();
+            BeanUtils.copyProperties(projectDetail.getOrganization(), organization);
+            copy.setOrganization(organization);
+        }
+        return copy;
+    }
+
+    /**
+     * 用户在 project 上的组织角色、是否 project 管理员及关联 role 的最大权限
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ProjectAccess {
+
+        private final Long projectId;
+
+        private final Long orgId;
+
+        /**
+         * 组织角色，非组织成员为 null
+         */
+        private final Short orgRole;
+
+        private final boolean projectAdmin;
+
+        private final UserMaxProjectPermission maxPermission;
+    }
+}
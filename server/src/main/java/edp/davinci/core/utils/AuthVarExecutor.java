@@ -0,0 +1,152 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edp.core.exception.ServerException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 权限变量解析共享线程池
+ * <p>
+ * 替代每次查询新建、销毁的线程池；同一请求内的任务共享一个截止时间（auth-var.timeout-millis），
+ * 队列满时由调用线程执行
+ */
+@Slf4j
+@Component
+public class AuthVarExecutor {
+
+    @Value("${auth-var.executor.threads:16}")
+    private int threads;
+
+    @Value("${auth-var.executor.queue-size:1000}")
+    private int queueSize;
+
+    @Value("${auth-var.timeout-millis:10000}")
+    private long timeoutMillis;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("auth-var-%d").setDaemon(true).build(),
+                (runnable, pool) -> {
+                    callerRuns.incrementAndGet();
+                    if (!pool.isShutdown()) {
+                        runnable.run();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并发执行任务，按提交顺序返回结果；任一任务失败或超过截止时间时取消其余任务
+     *
+     * @param tasks
+     * @return
+     * @throws ServerException
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) throws ServerException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            submitted.incrementAndGet();
+            try {
+                results.add(tasks.get(0).call());
+                return results;
+            } catch (ServerException e) {
+                failures.incrementAndGet();
+                throw e;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                throw new ServerException(e.getMessage(), e);
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                submitted.incrementAndGet();
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            Throwable cause = null == e.getCause() ? e : e.getCause();
+            throw new ServerException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            log.warn("Resolve auth variables timeout after {}ms, executor stats:{}", timeoutMillis, getStats());
+            throw new ServerException("Resolve auth variables timeout");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerException("Resolve auth variables interrupted");
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * 获取线程池统计信息
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("submitted", submitted.get());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("callerRuns", callerRuns.get());
+        stats.put("failures", failures.get());
+        stats.put("timeouts", timeouts.get());
+        return stats;
+    }
+}
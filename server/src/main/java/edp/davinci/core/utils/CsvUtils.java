@@ -25,6 +25,7 @@ import edp.core.model.QueryColumn;
 import edp.core.utils.CollectionUtils;
 import edp.core.utils.FileUtils;
 import edp.core.utils.SqlUtils;
+import edp.davinci.core.common.DataUploadHandler;
 import edp.davinci.core.enums.FileTypeEnum;
 import edp.davinci.core.enums.SqlColumnEnum;
 import edp.davinci.core.model.DataUploadEntity;
@@ -53,6 +54,38 @@ public class CsvUtils {
      */
     public static DataUploadEntity parseCsvWithFirstAsHeader(MultipartFile csvFile, String charsetName) throws ServerException {
 
+        DataUploadEntity dataUploadEntity = new DataUploadEntity();
+        List<Map<String, Object>> values = new ArrayList<>();
+
+        readCsvWithFirstAsHeader(csvFile, charsetName, new DataUploadHandler() {
+            @Override
+            public void onHeaders(Set<QueryColumn> headers) {
+                dataUploadEntity.setHeaders(headers);
+            }
+
+            @Override
+            public void onRow(Map<String, Object> row) {
+                values.add(row);
+            }
+        });
+
+        if (null == dataUploadEntity.getHeaders()) {
+            return null;
+        }
+        dataUploadEntity.setValues(values.isEmpty() ? null : values);
+        return dataUploadEntity;
+    }
+
+    /**
+     * 流式解析Csv，第一行为列名，第二行为列类型，其余行逐行回调
+     *
+     * @param csvFile
+     * @param charsetName
+     * @param handler
+     * @throws ServerException
+     */
+    public static void readCsvWithFirstAsHeader(MultipartFile csvFile, String charsetName, DataUploadHandler handler) throws ServerException {
+
         if (null == csvFile) {
             throw new ServerException("Invalid csv file");
         }
@@ -61,7 +94,6 @@ public class CsvUtils {
             throw new ServerException("Invalid csv file");
         }
 
-        DataUploadEntity dataUploadEntity = null;
         BufferedReader reader = null;
         CSVParser csvParser = null;
         try {
@@ -71,41 +103,47 @@ public class CsvUtils {
                     .withIgnoreHeaderCase()
                     .withTrim());
 
-            Set<String> csvHeaders = csvParser.getHeaderMap().keySet();
+            Iterator<CSVRecord> iterator = csvParser.iterator();
+            if (!iterator.hasNext()) {
+                return;
+            }
 
-            List<CSVRecord> records = csvParser.getRecords();
-            List<Map<String, Object>> values = null;
-            Set<QueryColumn> headers = null;
+            Map<String, Integer> headerMap = csvParser.getHeaderMap();
+            String[] names = new String[headerMap.size()];
+            int[] indexes = new int[headerMap.size()];
+            int k = 0;
+            for (Map.Entry<String, Integer> entry : headerMap.entrySet()) {
+                names[k] = entry.getKey().replace("\uFEFF", EMPTY);
+                indexes[k] = entry.getValue();
+                k++;
+            }
 
-            if (!CollectionUtils.isEmpty(records)) {
-                headers = new HashSet<>();
-                for (String key : csvHeaders) {
-                    headers.add(new QueryColumn(key.replace("\uFEFF", EMPTY), SqlUtils.formatSqlType(records.get(0).get(key))));
-                }
-                if (records.size() > 1) {
-                    values = new ArrayList<>();
-                    for (int i = 1; i < records.size(); i++) {
-                        Map<String, Object> item = new HashMap<>();
-                        for (String key : csvHeaders) {
-                            item.put(key.replace("\uFEFF", EMPTY), SqlColumnEnum.formatValue(records.get(0).get(key), records.get(i).get(key)));
-                        }
-                        values.add(item);
-                    }
-                }
+            CSVRecord typeRecord = iterator.next();
+            String[] types = new String[names.length];
+            Set<QueryColumn> headers = new LinkedHashSet<>();
+            for (int i = 0; i < names.length; i++) {
+                types[i] = typeRecord.get(indexes[i]);
+                headers.add(new QueryColumn(names[i], SqlUtils.formatSqlType(types[i])));
+            }
+            handler.onHeaders(headers);
 
-                dataUploadEntity = new DataUploadEntity();
-                dataUploadEntity.setHeaders(headers);
-                dataUploadEntity.setValues(values);
+            while (iterator.hasNext()) {
+                CSVRecord record = iterator.next();
+                Map<String, Object> item = new HashMap<>(names.length * 2);
+                for (int i = 0; i < names.length; i++) {
+                    item.put(names[i], SqlColumnEnum.formatValue(types[i], record.get(indexes[i])));
+                }
+                handler.onRow(item);
             }
 
+        } catch (ServerException e) {
+            throw e;
         } catch (Exception e) {
             throw new ServerException(e.getMessage());
         } finally {
             FileUtils.closeCloseable(csvParser);
             FileUtils.closeCloseable(reader);
         }
-
-        return dataUploadEntity;
     }
 
 
@@ -20,6 +20,8 @@
 package edp.davinci.core.utils;
 
 import com.alibaba.druid.util.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import edp.core.exception.NotFoundException;
 import edp.davinci.core.common.ResultMap;
 import edp.davinci.model.DacChannel;
@@ -36,10 +38,10 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.stream.Collectors.groupingBy;
 
@@ -61,6 +63,35 @@ public class DacChannelUtil {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private AuthVarExecutor authVarExecutor;
+
+    /**
+     * 渠道数据缓存时间，渠道未单独配置时使用
+     */
+    private long cacheTtlSeconds = 60L;
+
+    /**
+     * 渠道请求失败的缓存时间，期间不再重复请求
+     */
+    private long negativeTtlSeconds = 10L;
+
+    private long cacheMaxSize = 10000L;
+
+    private Cache<String, DataEntry> dataCache;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong negativeHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong remoteCalls = new AtomicLong();
+
+    private final AtomicLong remoteErrors = new AtomicLong();
+
+    private final AtomicLong remoteNanos = new AtomicLong();
+
     public void loadDacMap() {
         if (null != channels) {
             Map<String, List<DacChannel>> map = channels.stream()
@@ -71,6 +102,16 @@ public class DacChannelUtil {
                 map.forEach((k, v) -> dacMap.put(k.trim(), v.get(v.size() - 1)));
             }
         }
+
+        long maxTtlSeconds = Math.max(cacheTtlSeconds, negativeTtlSeconds);
+        for (DacChannel channel : dacMap.values()) {
+            maxTtlSeconds = Math.max(maxTtlSeconds, getCacheTtlSeconds(channel));
+            maxTtlSeconds = Math.max(maxTtlSeconds, getNegativeTtlSeconds(channel));
+        }
+        dataCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Math.max(maxTtlSeconds, 1L), TimeUnit.SECONDS)
+                .build();
     }
 
     public List<DacChannel> getChannels() {
@@ -81,6 +122,18 @@ public class DacChannelUtil {
         this.channels = channels;
     }
 
+    public void setCacheTtlSeconds(long cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    public void setNegativeTtlSeconds(long negativeTtlSeconds) {
+        this.negativeTtlSeconds = negativeTtlSeconds;
+    }
+
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
     public List getTenants(String dacName) throws NotFoundException {
         if (!dacMap.containsKey(dacName)) {
             log.error("Data-auth-center channel:{} is not found", dacName);
@@ -132,28 +185,162 @@ public class DacChannelUtil {
 
 
     public List<Object> getData(String dacName, String bizId, String email) {
-        if (dacMap.containsKey(dacName) && !StringUtils.isEmpty(email)) {
+        if (!dacMap.containsKey(dacName) || StringUtils.isEmpty(email)) {
+            return null;
+        }
+        return getData(Collections.singletonMap(dacName, Collections.singleton(bizId)), email)
+                .get(dacName).get(bizId);
+    }
+
+    /**
+     * 批量获取用户在多个渠道业务下的权限数据
+     * 命中缓存的直接返回，其余去重后并发请求，同一请求共享截止时间
+     *
+     * @param bizIds 渠道名称 -> 业务 id
+     * @param email
+     * @return 渠道名称 -> 业务 id -> 数据，请求失败的数据为 null
+     */
+    public Map<String, Map<String, List<Object>>> getData(Map<String, ? extends Collection<String>> bizIds, String email) {
+        Map<String, Map<String, List<Object>>> result = new HashMap<>();
+        List<String[]> missed = new ArrayList<>();
+        bizIds.forEach((dacName, ids) -> {
+            Map<String, List<Object>> dataMap = result.computeIfAbsent(dacName, k -> new HashMap<>());
             DacChannel channel = dacMap.get(dacName);
+            for (String bizId : ids) {
+                if (dataMap.containsKey(bizId)) {
+                    continue;
+                }
+                if (null == channel || StringUtils.isEmpty(email)) {
+                    dataMap.put(bizId, null);
+                    continue;
+                }
+                DataEntry entry = getCached(getCacheKey(dacName, bizId, email));
+                if (null == entry) {
+                    misses.incrementAndGet();
+                    dataMap.put(bizId, null);
+                    missed.add(new String[]{dacName, bizId});
+                } else {
+                    if (null == entry.data) {
+                        negativeHits.incrementAndGet();
+                    } else {
+                        hits.incrementAndGet();
+                    }
+                    dataMap.put(bizId, entry.data);
+                }
+            }
+        });
+
+        if (!missed.isEmpty()) {
+            List<Callable<List<Object>>> tasks = new ArrayList<>(missed.size());
+            missed.forEach(m -> tasks.add(() -> fetchData(dacMap.get(m[0]), m[1], email)));
+            List<List<Object>> fetched = authVarExecutor.invokeAll(tasks);
+            for (int i = 0; i < missed.size(); i++) {
+                String[] m = missed.get(i);
+                result.get(m[0]).put(m[1], fetched.get(i));
+            }
+        }
+        return result;
+    }
 
-            MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
-            params.add(AUTH_CODE_KEY, channel.getAuthCode());
-            params.add(EMAIL_KEY, email);
+    /**
+     * 获取渠道数据缓存统计信息
+     *
+     * @return
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get() + negativeHits.get();
+        long requestCount = hitCount + misses.get();
+        long calls = remoteCalls.get();
+        stats.put("hits", hits.get());
+        stats.put("negativeHits", negativeHits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", requestCount == 0 ? 0D : (double) hitCount / requestCount);
+        stats.put("remoteCalls", calls);
+        stats.put("remoteErrors", remoteErrors.get());
+        stats.put("remoteAvgMillis", calls == 0 ? 0D : TimeUnit.NANOSECONDS.toMillis(remoteNanos.get()) / (double) calls);
+        stats.put("cacheSize", null == dataCache ? 0L : dataCache.size());
+        return stats;
+    }
+
+    private DataEntry getCached(String key) {
+        if (null == dataCache) {
+            return null;
+        }
+        DataEntry entry = dataCache.getIfPresent(key);
+        if (null != entry && entry.expireAt < System.currentTimeMillis()) {
+            dataCache.invalidate(key);
+            return null;
+        }
+        return entry;
+    }
 
-            try {
-                ResponseEntity<ResultMap> result = restTemplate.getForEntity(UriComponentsBuilder.
-                                fromHttpUrl(channel.getBaseUrl() + "/bizs/{bizId}/data")
-                                .queryParams(params)
-                                .build().toString(),
-                        ResultMap.class, bizId);
+    private List<Object> fetchData(DacChannel channel, String bizId, String email) {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add(AUTH_CODE_KEY, channel.getAuthCode());
+        params.add(EMAIL_KEY, email);
 
-                if (result.getStatusCode().equals(HttpStatus.OK)) {
-                    ResultMap resultMap = result.getBody();
-                    return (List<Object>) resultMap.get(PAYLOAD);
-                }
-            } catch (RestClientException e) {
-                log.error(e.toString(), e);
+        List<Object> data = null;
+        boolean success = false;
+        long start = System.nanoTime();
+        remoteCalls.incrementAndGet();
+        try {
+            ResponseEntity<ResultMap> result = restTemplate.getForEntity(UriComponentsBuilder.
+                            fromHttpUrl(channel.getBaseUrl() + "/bizs/{bizId}/data")
+                            .queryParams(params)
+                            .build().toString(),
+                    ResultMap.class, bizId);
+
+            if (result.getStatusCode().equals(HttpStatus.OK)) {
+                ResultMap resultMap = result.getBody();
+                data = (List<Object>) resultMap.get(PAYLOAD);
+                success = true;
             }
+        } catch (RestClientException e) {
+            log.error(e.toString(), e);
+        } finally {
+            long cost = System.nanoTime() - start;
+            remoteNanos.addAndGet(cost);
+            log.debug("Data-auth-center channel:{} biz:{} request cost {}ms", channel.getName(), bizId, TimeUnit.NANOSECONDS.toMillis(cost));
+        }
+
+        if (!success) {
+            remoteErrors.incrementAndGet();
+        }
+        if (null != dataCache) {
+            long ttlSeconds = null == data ? getNegativeTtlSeconds(channel) : getCacheTtlSeconds(channel);
+            if (ttlSeconds > 0) {
+                dataCache.put(getCacheKey(channel.getName(), bizId, email),
+                        new DataEntry(data, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds)));
+            }
+        }
+        return data;
+    }
+
+    private long getCacheTtlSeconds(DacChannel channel) {
+        return null == channel.getCacheTtlSeconds() ? cacheTtlSeconds : channel.getCacheTtlSeconds();
+    }
+
+    private long getNegativeTtlSeconds(DacChannel channel) {
+        return null == channel.getNegativeTtlSeconds() ? negativeTtlSeconds : channel.getNegativeTtlSeconds();
+    }
+
+    private static String getCacheKey(String dacName, String bizId, String email) {
+        return dacName + "@" + bizId + "@" + email;
+    }
+
+    /**
+     * 渠道数据缓存项，data 为 null 表示请求失败
+     */
+    private static class DataEntry {
+
+        private final List<Object> data;
+
+        private final long expireAt;
+
+        private DataEntry(List<Object> data, long expireAt) {
+            this.data = data;
+            this.expireAt = expireAt;
         }
-        return null;
     }
 }
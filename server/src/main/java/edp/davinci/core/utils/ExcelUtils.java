@@ -27,21 +27,35 @@ import edp.core.model.QueryColumn;
 import edp.core.utils.CollectionUtils;
 import edp.core.utils.FileUtils;
 import edp.core.utils.SqlUtils;
+import edp.davinci.core.common.DataUploadHandler;
 import edp.davinci.core.enums.FileTypeEnum;
 import edp.davinci.core.enums.NumericUnitEnum;
 import edp.davinci.core.enums.SqlColumnEnum;
 import edp.davinci.core.model.*;
 import edp.davinci.dto.viewDto.Param;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
 import javax.script.ScriptEngine;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -61,6 +75,35 @@ public class ExcelUtils {
      */
     public static DataUploadEntity parseExcelWithFirstAsHeader(MultipartFile excelFile) {
 
+        DataUploadEntity dataUploadEntity = new DataUploadEntity();
+        List<Map<String, Object>> values = new ArrayList<>();
+
+        readExcelWithFirstAsHeader(excelFile, new DataUploadHandler() {
+            @Override
+            public void onHeaders(Set<QueryColumn> headers) {
+                dataUploadEntity.setHeaders(headers);
+            }
+
+            @Override
+            public void onRow(Map<String, Object> row) {
+                values.add(row);
+            }
+        });
+
+        dataUploadEntity.setValues(values);
+        return dataUploadEntity;
+    }
+
+    /**
+     * 流式解析上传Excel，只读取第一个sheet页，前两行表示列名和类型，其余行逐行回调
+     * xlsx 基于 SAX 事件模型读取，xls 仍使用 HSSF 用户模型
+     *
+     * @param excelFile
+     * @param handler
+     * @throws ServerException
+     */
+    public static void readExcelWithFirstAsHeader(MultipartFile excelFile, DataUploadHandler handler) throws ServerException {
+
         if (null == excelFile) {
             throw new ServerException("Invalid excel file");
         }
@@ -69,58 +112,160 @@ public class ExcelUtils {
             throw new ServerException("Invalid excel file");
         }
 
-        DataUploadEntity dataUploadEntity = null;
+        UploadRowCollector collector = new UploadRowCollector(handler);
+
+        String originalFilename = excelFile.getOriginalFilename().toLowerCase();
+        if (originalFilename.endsWith(FileTypeEnum.XLSX.getFormat())) {
+            readXlsx(excelFile, collector);
+        } else if (originalFilename.endsWith(FileTypeEnum.XLS.getFormat())) {
+            readXls(excelFile, collector);
+        } else {
+            throw new ServerException("Invalid excel file");
+        }
 
-        Workbook workbook = null;
+        if (!collector.hasHeaders()) {
+            throw new ServerException("Empty excel");
+        }
+    }
 
+    private static void readXlsx(MultipartFile excelFile, UploadRowCollector collector) throws ServerException {
+        // OPCPackage 从流打开时会将整个压缩包读入内存，先落盘再按文件打开
+        File tempFile = null;
+        OPCPackage pkg = null;
+        InputStream sheetStream = null;
         try {
-            workbook = getReadWorkbook(excelFile);
+            tempFile = File.createTempFile("davinci-upload-", FileTypeEnum.XLSX.getFormat());
+            try (InputStream inputStream = excelFile.getInputStream()) {
+                Files.copy(inputStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            pkg = OPCPackage.open(tempFile, PackageAccess.READ);
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = xssfReader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            sheetStream = sheets.next();
+
+            XMLReader parser = SAXHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(), null, strings,
+                    collector, new DataFormatter(), false));
+            parser.parse(new InputSource(sheetStream));
+        } catch (ServerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServerException(e.getMessage());
+        } finally {
+            FileUtils.closeCloseable(sheetStream);
+            if (null != pkg) {
+                pkg.revert();
+            }
+            if (null != tempFile) {
+                tempFile.delete();
+            }
+        }
+    }
 
-            //只读取第一个sheet页
+    private static void readXls(MultipartFile excelFile, UploadRowCollector collector) throws ServerException {
+        Workbook workbook = getReadWorkbook(excelFile);
+        try {
             Sheet sheet = workbook.getSheetAt(0);
+            DataFormatter formatter = new DataFormatter();
+            for (Row row : sheet) {
+                collector.startRow(row.getRowNum());
+                for (Cell cell : row) {
+                    collector.cell(cell.getColumnIndex(), formatter.formatCellValue(cell));
+                }
+                collector.endRow(row.getRowNum());
+            }
+        } finally {
+            FileUtils.closeCloseable(workbook);
+        }
+    }
 
-            //前两行表示列名和类型
-            if (sheet.getLastRowNum() < 1) {
-                throw new ServerException("Empty excel");
+    /**
+     * 将逐个单元格的回调组装成行，第一行为列名，第二行为类型
+     */
+    private static class UploadRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final DataUploadHandler handler;
+
+        private final List<String> cells = new ArrayList<>();
+
+        private String[] names;
+
+        private String[] types;
+
+        private int currentCol;
+
+        UploadRowCollector(DataUploadHandler handler) {
+            this.handler = handler;
+        }
+
+        boolean hasHeaders() {
+            return null != types;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+            currentCol = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0) {
+                names = cells.toArray(new String[0]);
+                return;
             }
-            //列
-            Row headerRow = sheet.getRow(0);
-            Row typeRow = sheet.getRow(1);
-
-            List<Map<String, Object>> values = null;
-            Set<QueryColumn> headers = new HashSet<>();
-            for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-                try {
-                    headers.add(new QueryColumn(headerRow.getCell(i).getStringCellValue(),
-                            SqlUtils.formatSqlType(typeRow.getCell(i).getStringCellValue())));
-                } catch (Exception e) {
-                    if (e instanceof NullPointerException) {
+
+            if (rowNum == 1) {
+                if (null == names) {
+                    throw new ServerException("Empty excel");
+                }
+                types = new String[names.length];
+                Set<QueryColumn> headers = new LinkedHashSet<>();
+                for (int i = 0; i < names.length; i++) {
+                    types[i] = i < cells.size() ? cells.get(i) : null;
+                    if (null == names[i] || null == types[i]) {
                         throw new ServerException("Unknown Type");
                     }
-                    throw new ServerException(e.getMessage());
+                    headers.add(new QueryColumn(names[i], SqlUtils.formatSqlType(types[i])));
                 }
+                handler.onHeaders(headers);
+                return;
             }
 
-            values = new ArrayList<>();
-            for (int i = 2; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                Map<String, Object> item = new HashMap<>();
-                for (int j = 0; j < headerRow.getLastCellNum(); j++) {
-                    item.put(headerRow.getCell(j).getStringCellValue(),
-                            SqlColumnEnum.formatValue(typeRow.getCell(j).getStringCellValue(), row.getCell(j).getStringCellValue()));
-                }
-                values.add(item);
+            if (null == types) {
+                throw new ServerException("Empty excel");
+            }
+
+            Map<String, Object> item = new HashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                item.put(names[i], SqlColumnEnum.formatValue(types[i], i < cells.size() ? cells.get(i) : null));
             }
+            handler.onRow(item);
+        }
 
-            dataUploadEntity = new DataUploadEntity();
-            dataUploadEntity.setHeaders(headers);
-            dataUploadEntity.setValues(values);
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = null == cellReference ? currentCol + 1 : new CellReference(cellReference).getCol();
+            cell(col, formattedValue);
+        }
 
-        } catch (ServerException e) {
-            throw new ServerException(e.getMessage());
+        void cell(int col, String value) {
+            // 空单元格不会触发回调，补齐缺失的列
+            while (cells.size() < col) {
+                cells.add(null);
+            }
+            cells.add(value);
+            currentCol = col;
         }
 
-        return dataUploadEntity;
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
     }
 
     private static Workbook getReadWorkbook(MultipartFile excelFile) throws ServerException {
@@ -66,6 +66,15 @@ public class SqlParseUtils {
     private static final String QUERY_WHERE_FALSE = "1=0";
     private static final String QUERY_WHERE_VALUE = "'%s'";
 
+    /**
+     * 按界定符缓存编译后的正则
+     */
+    private static final Map<String, Pattern> PLACEHOLDER_PATTERNS = new ConcurrentHashMap<>();
+    private static final Map<String, Pattern> AUTHVAR_PATTERNS = new ConcurrentHashMap<>();
+
+    private static final Set<String> SQL_OPERATORS = Collections.unmodifiableSet(Arrays.stream(SqlOperatorEnum.values())
+            .map(SqlOperatorEnum::getValue).collect(Collectors.toSet()));
+
     @Autowired
     private DacChannelUtil dacChannelUtil;
 
@@ -86,7 +95,7 @@ public class SqlParseUtils {
 
         sqlStr = replaceSystemVariables(sqlStr, user, isMaintainer);
 
-        Pattern p = Pattern.compile(getPlaceholderReg(sqlTempDelimiter));
+        Pattern p = PLACEHOLDER_PATTERNS.computeIfAbsent(sqlTempDelimiter, d -> Pattern.compile(getPlaceholderReg(d)));
         Matcher matcher = p.matcher(sqlStr);
 
         if (!matcher.find()) {
@@ -96,52 +105,41 @@ public class SqlParseUtils {
         Map<String, Object> queryParamMap = new ConcurrentHashMap<>();
         Map<String, List<String>> authParamMap = new Hashtable<>();
 
-        // 解析参数
+        // 解析参数，此处不带用户信息，不会请求权限渠道，直接在当前线程完成
         if (!CollectionUtils.isEmpty(variables)) {
-            ExecutorService executorService = Executors.newFixedThreadPool(variables.size() > 4 ? 4 : variables.size());
-            try {
-                List<Future> futures = new ArrayList<>(variables.size());
-                variables.forEach(variable -> futures.add(executorService.submit(() -> {
-                    SqlVariableTypeEnum typeEnum = SqlVariableTypeEnum.typeOf(variable.getType());
-                    if (null != typeEnum) {
-                        switch (typeEnum) {
-                            case QUERYVAR:
-                                queryParamMap.put(variable.getName().trim(), SqlVariableValueTypeEnum
-                                        .getValues(variable.getValueType(), variable.getDefaultValues(), variable.isUdf()));
-                                break;
-                            case AUTHVAR:
-                                if (null != variable) {
-                                    List<String> v = getAuthVarValue(variable, null);
-                                    authParamMap.put(variable.getName().trim(), null == v ? new ArrayList<>() : v);
-                                }
-                                break;
-                        }
-                    }
-                })));
-
-                try {
-                    for (Future future : futures) {
-                        future.get();
-                    }
-                } catch (ExecutionException e) {
-                    executorService.shutdownNow();
-                    throw new ServerException(e.getMessage());
+            for (SqlVariable variable : variables) {
+                SqlVariableTypeEnum typeEnum = SqlVariableTypeEnum.typeOf(variable.getType());
+                if (null == typeEnum) {
+                    continue;
+                }
+                switch (typeEnum) {
+                    case QUERYVAR:
+                        queryParamMap.put(variable.getName().trim(), SqlVariableValueTypeEnum
+                                .getValues(variable.getValueType(), variable.getDefaultValues(), variable.isUdf()));
+                        break;
+                    case AUTHVAR:
+                        List<String> v = getAuthVarValue(variable, null);
+                        authParamMap.put(variable.getName().trim(), null == v ? new ArrayList<>() : v);
+                        break;
                 }
-
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } finally {
-                executorService.shutdown();
             }
         }
         return new SqlEntity(sqlStr, queryParamMap, authParamMap);
     }
 
-    private String getPlaceholderReg(String delimiter) {
+    private static String getPlaceholderReg(String delimiter) {
         delimiter = "\\" + delimiter;
         return String.format(REG_SQL_PLACEHOLDER, delimiter, delimiter);
     }
 
+    /**
+     * 获取权限变量值
+     * 渠道数据已由 DacChannelUtil 按 (渠道, 业务, 用户邮箱) 缓存，此处只做取值转换，不另行缓存
+     *
+     * @param variable
+     * @param email
+     * @return
+     */
     public List<String> getAuthVarValue(SqlVariable variable, String email) {
         SqlVariableChannel channel = variable.getChannel();
         if (null == channel) {
@@ -157,6 +155,41 @@ public class SqlParseUtils {
         return new ArrayList<>();
     }
 
+    /**
+     * 批量获取权限变量值，同一请求内的渠道数据一次性获取
+     *
+     * @param variables
+     * @param email
+     * @return 与 variables 顺序一致
+     */
+    public List<List<String>> getAuthVarValues(List<SqlVariable> variables, String email) {
+        Map<String, Set<String>> bizIds = new HashMap<>();
+        if (!StringUtils.isEmpty(email)) {
+            for (SqlVariable variable : variables) {
+                SqlVariableChannel channel = variable.getChannel();
+                if (null != channel && DacChannelUtil.dacMap.containsKey(channel.getName())) {
+                    bizIds.computeIfAbsent(channel.getName(), k -> new HashSet<>()).add(channel.getBizId().toString());
+                }
+            }
+        }
+
+        Map<String, Map<String, List<Object>>> dataMap = bizIds.isEmpty() ? Collections.emptyMap() : dacChannelUtil.getData(bizIds, email);
+
+        List<List<String>> values = new ArrayList<>(variables.size());
+        for (SqlVariable variable : variables) {
+            SqlVariableChannel channel = variable.getChannel();
+            if (null == channel || !DacChannelUtil.dacMap.containsKey(channel.getName())) {
+                values.add(getAuthVarValue(variable, email));
+            } else if (StringUtils.isEmpty(email)) {
+                values.add(null);
+            } else {
+                List<Object> data = dataMap.get(channel.getName()).get(channel.getBizId().toString());
+                values.add(SqlVariableValueTypeEnum.getValues(variable.getValueType(), data, variable.isUdf()));
+            }
+        }
+        return values;
+    }
+
     /**
      * 替换参数
      *
@@ -175,7 +208,7 @@ public class SqlParseUtils {
         Deque<String> deque = new ArrayDeque<>();
         deque.push(sql);
 
-        Pattern p = Pattern.compile(getAuthVarReg(sqlTempDelimiter));
+        Pattern p = AUTHVAR_PATTERNS.computeIfAbsent(sqlTempDelimiter, d -> Pattern.compile(getAuthVarReg(d)));
         Set<String> authVarFragments = new HashSet<>();
         while (!deque.isEmpty()) {
             Matcher matcher = p.matcher(deque.pop());
@@ -195,12 +228,11 @@ public class SqlParseUtils {
             }
         }
 
-        Map<String, List<SqlOperatorEnum>> operatorMap = Arrays.stream(SqlOperatorEnum.values()).collect(Collectors.groupingBy(SqlOperatorEnum::getValue));
         Set<String> expSet = new HashSet<>();
 
         for (String fragment : authVarFragments) {
             match:
-            for (String key : operatorMap.keySet()) {
+            for (String key : SQL_OPERATORS) {
                 if (fragment.toUpperCase().contains(key)) {
                     expSet.add(fragment);
                     break match;
@@ -0,0 +1,111 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.utils;
+
+import edp.davinci.core.common.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.net.URL;
+
+/**
+ * SQL 模板
+ * <p>
+ * sqlTemplate.stg 只加载、编译一次，之后每次返回新的 ST 实例，编译结果在线程间共享；
+ * 开启 sql-template.hot-reload 后，模板文件（仅限文件系统中的 classpath 资源）修改时重新加载，用于开发调试
+ */
+@Slf4j
+@Component
+public class SqlTemplateUtils {
+
+    private static final long RELOAD_CHECK_INTERVAL_MILLIS = 1000L;
+
+    @Value("${sql-template.hot-reload:false}")
+    private boolean hotReload;
+
+    private volatile STGroup group;
+
+    private volatile long lastModified;
+
+    private volatile long lastCheckTime;
+
+    @PostConstruct
+    public void init() {
+        group = load();
+        lastModified = getTemplateFileLastModified();
+    }
+
+    /**
+     * 获取模板实例
+     *
+     * @param name 模板名称
+     * @return
+     */
+    public ST getInstanceOf(String name) {
+        if (hotReload) {
+            reloadIfModified();
+        }
+        return group.getInstanceOf(name);
+    }
+
+    private STGroup load() {
+        STGroup stGroup = new STGroupFile(Constants.SQL_TEMPLATE);
+        // 预先加载全部模板，之后只读访问
+        stGroup.load();
+        return stGroup;
+    }
+
+    private void reloadIfModified() {
+        long now = System.currentTimeMillis();
+        if (now - lastCheckTime < RELOAD_CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        synchronized (this) {
+            if (now - lastCheckTime < RELOAD_CHECK_INTERVAL_MILLIS) {
+                return;
+            }
+            lastCheckTime = now;
+            long modified = getTemplateFileLastModified();
+            if (modified > lastModified) {
+                group = load();
+                lastModified = modified;
+                log.info("Sql template {} reloaded", Constants.SQL_TEMPLATE);
+            }
+        }
+    }
+
+    private long getTemplateFileLastModified() {
+        URL url = SqlTemplateUtils.class.getClassLoader().getResource(Constants.SQL_TEMPLATE);
+        if (null == url || !"file".equals(url.getProtocol())) {
+            return 0L;
+        }
+        try {
+            return new File(url.toURI()).lastModified();
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+}
@@ -32,6 +32,9 @@ public class CronJobConfig {
     private String type;
     private String content;
 
+    //附件导出格式：xlsx(默认)、csv、tsv、csv.gz、tsv.gz
+    private String exportFormat;
+
     private String webHookUrl;
 
     private Integer imageWidth;
@@ -20,11 +20,15 @@
 package edp.davinci.dto.viewDto;
 
 import com.alibaba.druid.util.StringUtils;
+import edp.core.enums.DataTypeEnum;
+import edp.core.enums.NullOrderingEnum;
+import edp.core.exception.ServerException;
 import edp.core.utils.CollectionUtils;
 import edp.core.utils.SqlUtils;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -48,6 +52,11 @@ public class ViewExecuteParam extends ConcurrencyStrategy{
     private int pageSize = -1;
     private int totalCount = 0;
 
+    /**
+     * 上一页末行的排序列取值，与 orders 一一对应，用于明细表按排序翻页（keyset 分页），排序列组合需唯一
+     */
+    private List<Object> keyset;
+
     private boolean nativeQuery = false;
 
     public ViewExecuteParam() {
@@ -120,6 +129,85 @@ public class ViewExecuteParam extends ConcurrencyStrategy{
         return list;
     }
 
+    /**
+     * 是否使用 keyset 分页：无分组聚合的有序明细查询，翻到后续页且总数已知、取值完整，
+     * 且数据源的 NULL 排序位置已知时有效；上一页末行含 NULL 时退回按偏移分页
+     *
+     * @param jdbcUrl
+     * @return
+     */
+    public boolean isKeysetPaging(String jdbcUrl) {
+        if (CollectionUtils.isEmpty(keyset) || CollectionUtils.isEmpty(orders) || keyset.size() != orders.size()) {
+            return false;
+        }
+        if (null != getGroups() || !CollectionUtils.isEmpty(aggregators) || pageNo <= 1 || totalCount <= 0) {
+            return false;
+        }
+        if (null == NullOrderingEnum.getNullOrdering(DataTypeEnum.urlOf(jdbcUrl))) {
+            return false;
+        }
+        return keyset.stream().allMatch(v -> null != v);
+    }
+
+    /**
+     * keyset 分页条件，如 (a > 1) OR (a = 1 AND (b < 'x' OR b IS NULL))，NULL 排在后面的方向补充 IS NULL，
+     * 需在 getOrders 之后调用
+     *
+     * @param jdbcUrl
+     * @return
+     * @throws ServerException 取值不是数字、布尔或字符串
+     */
+    public String buildKeysetFilter(String jdbcUrl) throws ServerException {
+        DataTypeEnum dataTypeEnum = DataTypeEnum.urlOf(jdbcUrl);
+        NullOrderingEnum nullOrdering = NullOrderingEnum.getNullOrdering(dataTypeEnum);
+        StringBuilder filter = new StringBuilder();
+        for (int i = 0; i < orders.size(); i++) {
+            if (i > 0) {
+                filter.append(" OR ");
+            }
+            filter.append(PARENTHESES_START);
+            for (int j = 0; j < i; j++) {
+                filter.append(orders.get(j).getColumn()).append(" = ").append(toLiteral(keyset.get(j), dataTypeEnum)).append(" AND ");
+            }
+            Order order = orders.get(i);
+            boolean desc = "DESC".equalsIgnoreCase(order.getDirection().trim());
+            String compare = order.getColumn() + (desc ? " < " : " > ") + toLiteral(keyset.get(i), dataTypeEnum);
+            if (nullOrdering.isNullsAfter(desc)) {
+                filter.append(PARENTHESES_START).append(compare).append(" OR ")
+                        .append(order.getColumn()).append(" IS NULL").append(PARENTHESES_END);
+            } else {
+                filter.append(compare);
+            }
+            filter.append(PARENTHESES_END);
+        }
+        return filter.toString();
+    }
+
+    private static String toLiteral(Object value, DataTypeEnum dataTypeEnum) throws ServerException {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        if (!(value instanceof String)) {
+            throw new ServerException("Invalid keyset value: " + value);
+        }
+        String literal = (String) value;
+        switch (dataTypeEnum) {
+            // 默认把反斜杠视为转义符
+            case MYSQL:
+            case HIVE2:
+            case CLICKHOUSE:
+            case MOONBOX:
+                literal = literal.replace("\\", "\\\\");
+                break;
+            default:
+                break;
+        }
+        return APOSTROPHE + literal.replace(APOSTROPHE, APOSTROPHE + APOSTROPHE) + APOSTROPHE;
+    }
+
     public void addExcludeColumn(Set<String> excludeColumns, String jdbcUrl, String dbVersion) {
         if (!CollectionUtils.isEmpty(excludeColumns) && !CollectionUtils.isEmpty(aggregators)) {
             excludeColumns.addAll(this.aggregators.stream()
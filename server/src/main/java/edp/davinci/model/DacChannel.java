@@ -32,4 +32,16 @@ public class DacChannel {
 
     @JSONField(name = "auth-code")
     private String authCode;
+
+    /**
+     * 数据缓存时间（秒），为空时使用全局配置
+     */
+    @JSONField(name = "cache-ttl-seconds")
+    private Long cacheTtlSeconds;
+
+    /**
+     * 请求失败的缓存时间（秒），为空时使用全局配置
+     */
+    @JSONField(name = "negative-ttl-seconds")
+    private Long negativeTtlSeconds;
 }
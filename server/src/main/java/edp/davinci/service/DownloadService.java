@@ -20,6 +20,7 @@
 package edp.davinci.service;
 
 import edp.davinci.core.enums.DownloadType;
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.dto.viewDto.DownloadViewExecuteParam;
 import edp.davinci.model.DownloadRecord;
 import edp.davinci.model.User;
@@ -62,7 +63,8 @@ public interface DownloadService {
      * @param id
      * @param user
      * @param params
+     * @param exportFormat
      * @return
      */
-    Boolean submit(DownloadType type, Long id, User user, List<DownloadViewExecuteParam> params);
+    Boolean submit(DownloadType type, Long id, User user, List<DownloadViewExecuteParam> params, ExportFormatEnum exportFormat);
 }
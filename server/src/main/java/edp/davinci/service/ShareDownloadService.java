@@ -20,6 +20,7 @@
 package edp.davinci.service;
 
 import edp.davinci.core.enums.DownloadType;
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.dto.viewDto.DownloadViewExecuteParam;
 import edp.davinci.model.ShareDownloadRecord;
 import edp.davinci.model.User;
@@ -34,9 +35,10 @@ public interface ShareDownloadService {
      * @param downloadType
      * @param uuid
      * @param downloadViewExecuteParams
+     * @param exportFormat
      * @return
      */
-    boolean submit(DownloadType downloadType, String uuid, List<DownloadViewExecuteParam> downloadViewExecuteParams);
+    boolean submit(DownloadType downloadType, String uuid, List<DownloadViewExecuteParam> downloadViewExecuteParams, ExportFormatEnum exportFormat);
 
     /**
      * 获取分享下载列表
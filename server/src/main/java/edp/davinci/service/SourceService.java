@@ -32,6 +32,7 @@ import edp.davinci.model.User;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
 
 public interface SourceService extends CheckEntityService {
 
@@ -60,4 +61,6 @@ public interface SourceService extends CheckEntityService {
     List<DatasourceType> getDatasources();
 
     boolean reconnect(Long id, DbBaseInfo dbBaseInfo, User user) throws NotFoundException, UnAuthorizedException, ServerException;
+
+    Map<String, Object> getSourceHealth(Long id, User user) throws NotFoundException, UnAuthorizedException, ServerException;
 }
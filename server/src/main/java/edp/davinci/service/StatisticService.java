@@ -1,9 +1,17 @@
 package edp.davinci.service;
 
 import java.util.List;
+import java.util.Map;
 
 public interface StatisticService {
 
     <T> void insert(List<T> durationInfos, Class clz);
 
+    /**
+     * 与数据源无关的全局组件状态：脚本引擎池、数据权限中心、权限变量线程池及 kafka 发送统计
+     *
+     * @return
+     */
+    Map<String, Object> getRuntimeStats();
+
 }
@@ -19,6 +19,7 @@
 
 package edp.davinci.service;
 
+import edp.core.common.jdbc.ResultStreamHandler;
 import edp.core.exception.NotFoundException;
 import edp.core.exception.ServerException;
 import edp.core.exception.UnAuthorizedException;
@@ -50,12 +51,16 @@ public interface ViewService extends CheckEntityService {
 
     Paginate<Map<String, Object>> getData(Long id, ViewExecuteParam executeParam, User user) throws NotFoundException, UnAuthorizedException, ServerException, SQLException;
 
+    void getDataByStream(Long id, ViewExecuteParam executeParam, User user, ResultStreamHandler handler) throws NotFoundException, UnAuthorizedException, ServerException;
+
     PaginateWithQueryColumns getResultDataList(boolean isMaintainer, ViewWithSource viewWithSource, ViewExecuteParam executeParam, User user) throws ServerException, SQLException;
 
     List<Map<String, Object>> getDistinctValue(Long id, DistinctParam param, User user) throws NotFoundException, ServerException, UnAuthorizedException;
 
     List getDistinctValueData(boolean isMaintainer, ViewWithSource viewWithSource, DistinctParam param, User user) throws ServerException;
 
+    boolean cancelQuery(String requestId, User user);
+
     ViewWithSourceBaseInfo getView(Long id, User user) throws NotFoundException, UnAuthorizedException, ServerException;
 
     SQLContext getSQLContext(boolean isMaintainer, ViewWithSource viewWithSource, ViewExecuteParam executeParam, User user);
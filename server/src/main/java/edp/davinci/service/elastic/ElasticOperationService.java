@@ -10,6 +10,7 @@ import org.springframework.stereotype.Component;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Map;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 
@@ -46,6 +47,39 @@ public class ElasticOperationService extends ElasticConfiguration {
         }
     }
 
+    /**
+     * 批量写入已转换为 Map 的文档
+     *
+     * @param index
+     * @param type
+     * @param sources
+     */
+    public void bulkInsert(String index, String type, List<Map<String, Object>> sources) {
+
+        try{
+
+            BulkRequestBuilder bulkRequest = client.prepareBulk();
+
+            for(Map<String, Object> source : sources){
+                XContentBuilder builder = jsonBuilder().startObject();
+                for(Map.Entry<String, Object> entry : source.entrySet()){
+                    builder.field(entry.getKey(), entry.getValue());
+                }
+                builder.endObject();
+                bulkRequest.add(client.prepareIndex(index, type).setSource(builder));
+            }
+
+            BulkResponse bulkResponse = bulkRequest.get();
+            if (bulkResponse.hasFailures()) {
+                log.error("ElasticOperation bulkInsert failed. {}", bulkResponse.buildFailureMessage());
+            }
+
+        }catch (Exception e){
+            log.error("ElasticOperation bulkInsert error. ", e);
+            throw new ServerException(e.getMessage());
+        }
+    }
+
     private static String[] getFiledName(Object o) {
         Field[] fields = o.getClass().getDeclaredFields();
         String[] fieldNames = new String[fields.length];
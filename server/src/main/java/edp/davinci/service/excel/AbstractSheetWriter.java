@@ -51,13 +51,7 @@ import static edp.core.consts.Consts.EMPTY;
 @Slf4j
 public abstract class AbstractSheetWriter {
 
-    private CellStyle header;
-
-    private CellStyle myDefault;
-
-    private CellStyle general;
-
-    private DataFormat format;
+    private WorkbookStyles styles;
 
     private int nextRowNum = 0;
 
@@ -68,23 +62,18 @@ public abstract class AbstractSheetWriter {
     //记录列最大字符数
     Map<String, Integer> columnWidthMap = new HashMap();
 
+    //按列下标预先计算的写入计划，写入数据行时不再按列名查找
+    private ColumnPlan[] columnPlans;
+
+    private Object[] rowBuffer;
+
 
     protected void init(SheetContext context) throws Exception {
-        format = context.getWorkbook().createDataFormat();
-        //默认格式
-        myDefault = context.getWorkbook().createCellStyle();
-        //常规格式
-        general = context.getWorkbook().createCellStyle();
-        general.setDataFormat(format.getFormat("General"));
-        //表头格式 粗体居中
-        header = context.getWorkbook().createCellStyle();
-        Font font = context.getWorkbook().createFont();
-        font.setFontName("黑体");
-        font.setBold(true);
-        header.setFont(font);
-        header.setDataFormat(format.getFormat("@"));
-        header.setAlignment(HorizontalAlignment.CENTER);
-        header.setVerticalAlignment(VerticalAlignment.CENTER);
+        styles = context.getStyles();
+        if (null == styles) {
+            styles = new WorkbookStyles(context.getWorkbook());
+            context.setStyles(styles);
+        }
     }
 
     protected void writeHeader(SheetContext context) throws Exception {
@@ -122,10 +111,7 @@ public abstract class AbstractSheetWriter {
                     //设置列数据格式
                     String dataFormat = ExcelUtils.getDataFormat(excelHeader.getFormat());
                     if (!StringUtils.isEmpty(dataFormat)) {
-                        CellStyle dataStyle = context.getWorkbook().createCellStyle();
-                        DataFormat xssfDataFormat = context.getWorkbook().createDataFormat();
-                        dataStyle.setDataFormat(xssfDataFormat.getFormat(dataFormat));
-                        headerFormatMap.put(excelHeader.getKey(), dataStyle);
+                        headerFormatMap.put(excelHeader.getKey(), styles.getDataStyle(dataFormat));
                     }
                 }
             }
@@ -150,7 +136,7 @@ public abstract class AbstractSheetWriter {
                     }
                 }
                 Cell cell = context.getSheet().getRow(excelHeader.getRow()).getCell(excelHeader.getCol());
-                cell.setCellStyle(header);
+                cell.setCellStyle(styles.getHeader());
                 cell.setCellValue(StringUtils.isEmpty(excelHeader.getAlias()) ? excelHeader.getKey() : excelHeader.getAlias());
             }
         } else {
@@ -159,7 +145,7 @@ public abstract class AbstractSheetWriter {
                 QueryColumn queryColumn = context.getQueryColumns().get(i);
                 columnWidthMap.put(queryColumn.getName(), Math.max(queryColumn.getName().getBytes().length, queryColumn.getType().getBytes().length));
                 Cell cell = row.createCell(i);
-                cell.setCellStyle(header);
+                cell.setCellStyle(styles.getHeader());
                 cell.setCellValue(queryColumn.getName());
             }
         }
@@ -174,43 +160,83 @@ public abstract class AbstractSheetWriter {
                 row.createCell(i).setCellValue(type);
             }
         }
+        buildColumnPlans(context);
+    }
+
+    private void buildColumnPlans(SheetContext context) {
+        List<QueryColumn> queryColumns = context.getQueryColumns();
+        columnPlans = new ColumnPlan[queryColumns.size()];
+        for (int i = 0; i < queryColumns.size(); i++) {
+            QueryColumn queryColumn = queryColumns.get(i);
+            String name = queryColumn.getName();
+            CellStyle numberStyle = headerFormatMap.containsKey(name) ? headerFormatMap.get(name) : styles.getGeneral();
+            Integer width = columnWidthMap.get(name);
+            columnPlans[i] = new ColumnPlan(name, "value".equals(queryColumn.getType()), numberStyle,
+                    null == width ? -1 : width);
+        }
+        rowBuffer = new Object[columnPlans.length];
+    }
+
+    /**
+     * 数据行按列下标写入的列名顺序
+     *
+     * @return
+     */
+    protected String[] getColumnNames() {
+        String[] names = new String[columnPlans.length];
+        for (int i = 0; i < columnPlans.length; i++) {
+            names[i] = columnPlans[i].name;
+        }
+        return names;
     }
 
     protected void writeLine(SheetContext context, Map<String, Object> dataMap) {
+        for (int j = 0; j < columnPlans.length; j++) {
+            rowBuffer[j] = dataMap.get(columnPlans[j].name);
+        }
+        writeLine(context, rowBuffer);
+    }
+
+    /**
+     * 写入一行数据，values 按 getColumnNames 的顺序排列，调用方可复用同一数组
+     *
+     * @param context
+     * @param values
+     */
+    protected void writeLine(SheetContext context, Object[] values) {
         Row row = context.getSheet().createRow(nextRowNum++);
-        for (int j = 0; j < context.getQueryColumns().size(); j++) {
-            QueryColumn queryColumn = context.getQueryColumns().get(j);
-            myDefault.setDataFormat(format.getFormat("@"));
-            Object value = dataMap.get(queryColumn.getName());
+        for (int j = 0; j < columnPlans.length; j++) {
+            ColumnPlan plan = columnPlans[j];
+            Object value = values[j];
             Cell cell = row.createCell(j);
             if (null != value) {
-                if (value instanceof Number || queryColumn.getType().equals("value")) {
+                String text = null;
+                if (value instanceof Number || plan.numeric) {
 
-                    Double v = formatNumber(value, dataUnitMap.get(queryColumn.getName()));
+                    Double v = formatNumber(value);
 
                     if (v == null) {
-                        cell.setCellValue(String.valueOf(value));
+                        text = String.valueOf(value);
+                        cell.setCellValue(text);
                     } else {
                         cell.setCellValue(v);
                     }
 
-                    if (null != headerFormatMap && headerFormatMap.containsKey(queryColumn.getName())) {
-                        cell.setCellStyle(headerFormatMap.get(queryColumn.getName()));
-                    } else {
-                        cell.setCellStyle(general);
-                    }
+                    cell.setCellStyle(plan.numberStyle);
                 } else {
-                    cell.setCellValue(String.valueOf(value));
+                    text = String.valueOf(value);
+                    cell.setCellValue(text);
                 }
 
-                if (columnWidthMap.containsKey(queryColumn.getName())) {
-                    if (String.valueOf(value).getBytes().length > columnWidthMap.get(queryColumn.getName())) {
-                        columnWidthMap.put(queryColumn.getName(), String.valueOf(value).getBytes().length);
+                if (plan.width >= 0) {
+                    int width = byteLength(null == text ? String.valueOf(value) : text);
+                    if (width > plan.width) {
+                        plan.width = width;
                     }
                 }
             } else {
                 cell.setCellValue(EMPTY);
-                cell.setCellStyle(myDefault);
+                cell.setCellStyle(styles.getText());
             }
         }
     }
@@ -220,10 +246,12 @@ public abstract class AbstractSheetWriter {
         sheet.setDefaultRowHeight((short) (20 * 20));
         sheet.trackAllColumnsForAutoSizing();
         for (int i = 0; i < context.getQueryColumns().size(); i++) {
-            context.getSheet().autoSizeColumn(i, true);
-            QueryColumn queryColumn = context.getQueryColumns().get(i);
-            if (columnWidthMap.containsKey(queryColumn.getName())) {
-                int width = columnWidthMap.get(queryColumn.getName());
+            // 计算列宽需读取工作簿字体
+            synchronized (context.getWorkbook()) {
+                context.getSheet().autoSizeColumn(i, true);
+            }
+            int width = null != columnPlans && i < columnPlans.length ? columnPlans[i].width : -1;
+            if (width >= 0) {
                 if (width > 0) {
                     width = width > 255 ? 255 : width;
                     context.getSheet().setColumnWidth(i, width * 256);
@@ -236,7 +264,11 @@ public abstract class AbstractSheetWriter {
     }
 
 
-    private Double formatNumber(Object value, NumericUnitEnum unitEnum) {
+    private Double formatNumber(Object value) {
+        // Float、BigDecimal 等仍按字符串解析，保持与原有的显示值一致
+        if (value instanceof Double || value instanceof Long || value instanceof Integer || value instanceof Short) {
+            return ((Number) value).doubleValue();
+        }
         try {
             return Double.parseDouble(String.valueOf(value));
         } catch (NumberFormatException e) {
@@ -244,4 +276,44 @@ public abstract class AbstractSheetWriter {
         }
         return null;
     }
+
+    /**
+     * 字符串按 UTF-8 编码的字节数，不生成字节数组
+     */
+    private static int byteLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class ColumnPlan {
+
+        private final String name;
+
+        private final boolean numeric;
+
+        private final CellStyle numberStyle;
+
+        //列最大字节数，-1 表示不记录
+        private int width;
+
+        private ColumnPlan(String name, boolean numeric, CellStyle numberStyle, int width) {
+            this.name = name;
+            this.numeric = numeric;
+            this.numberStyle = numberStyle;
+            this.width = width;
+        }
+    }
 }
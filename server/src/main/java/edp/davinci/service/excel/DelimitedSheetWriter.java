@@ -0,0 +1,108 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.excel;
+
+import edp.core.model.QueryColumn;
+import edp.core.utils.CollectionUtils;
+import edp.davinci.core.enums.ExportFormatEnum;
+import edp.davinci.core.model.ExcelHeader;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 将单个 widget 的查询结果从 JDBC 游标逐行写为 csv/tsv，查询与 SheetWorker 共用 SheetQuery（同样最多 1,000,000 行）
+ * 列的排除与表头取值与 SheetWorker 一致，表格类 widget 按表头顺序输出叶子列并使用别名，数值原样输出不做单位换算
+ */
+public class DelimitedSheetWriter {
+
+    private final SheetContext context;
+
+    private final CSVFormat csvFormat;
+
+    public DelimitedSheetWriter(SheetContext context, ExportFormatEnum exportFormat) {
+        this.context = context;
+        this.csvFormat = CSVFormat.DEFAULT.withDelimiter(exportFormat.getDelimiter()).withRecordSeparator("\r\n");
+    }
+
+    /**
+     * 写出表头及全部数据行，返回数据行数，out 由调用方关闭
+     *
+     * @param out
+     * @return
+     * @throws Exception
+     */
+    public long write(Writer out) throws Exception {
+        SheetQuery query = new SheetQuery(context, "delimited writer(name:" + context.getName() + ", sheetNo:" + context.getSheetNo() + ")");
+        query.prepare();
+
+        List<String> names = new ArrayList<>();
+        List<String> headers = new ArrayList<>();
+        buildHeader(names, headers);
+
+        CSVPrinter printer = new CSVPrinter(out, csvFormat);
+        printer.printRecord(headers);
+
+        long count = query.query(names.toArray(new String[0]), values -> {
+            for (int j = 0; j < values.length; j++) {
+                values[j] = formatValue(values[j]);
+            }
+            printer.printRecord(values);
+        });
+        printer.flush();
+        return count;
+    }
+
+    /**
+     * 确定输出列及表头文字
+     *
+     * @param names
+     * @param headers
+     */
+    private void buildHeader(List<String> names, List<String> headers) {
+        if (context.getIsTable() && !CollectionUtils.isEmpty(context.getExcelHeaders())) {
+            Set<String> columns = new HashSet<>();
+            context.getQueryColumns().forEach(c -> columns.add(c.getName()));
+            for (ExcelHeader excelHeader : context.getExcelHeaders()) {
+                if (columns.contains(excelHeader.getKey())) {
+                    names.add(excelHeader.getKey());
+                    headers.add(StringUtils.isEmpty(excelHeader.getAlias()) ? excelHeader.getKey() : excelHeader.getAlias());
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            for (QueryColumn queryColumn : context.getQueryColumns()) {
+                names.add(queryColumn.getName());
+                headers.add(queryColumn.getName());
+            }
+        }
+    }
+
+    private static Object formatValue(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.excel;
+
+import com.google.common.base.Stopwatch;
+import edp.core.utils.CollectionUtils;
+import edp.core.utils.FileUtils;
+import edp.davinci.core.config.SpringContextHolder;
+import edp.davinci.core.enums.ActionEnum;
+import edp.davinci.core.enums.ExportFormatEnum;
+import edp.davinci.core.enums.FileTypeEnum;
+import edp.davinci.dto.cronJobDto.MsgMailExcel;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * csv/tsv 导出
+ * 不经过 POI，查询结果从游标直接写入磁盘文件；单个 widget 输出一个文件（可选 gzip），
+ * 多个 widget 时每个 widget 作为一个条目依次写入 zip
+ */
+public class DelimitedWorkbookWorker<T> extends WorkbookWorker<T> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //解决csv用excel打开乱码问题
+    private static final String UTF8_BOM = "\uFEFF";
+
+    public DelimitedWorkbookWorker(WorkBookContext context) {
+        super(context);
+    }
+
+    @Override
+    public T call() throws Exception {
+        Stopwatch watch = Stopwatch.createStarted();
+        Logger logger = context.getCustomLogger();
+        boolean log = context.getCustomLogger() != null;
+
+        MsgWrapper wrapper = context.getWrapper();
+        ExportFormatEnum exportFormat = context.getExportFormat();
+        Object[] logArgs = {context.getTaskKey(), wrapper.getAction(), wrapper.getxId(), exportFormat.getFormat()};
+        if (log) {
+            logger.info("Task({}) delimited worker start action={}, xid={}, format={}", logArgs);
+        }
+
+        String filePath = null;
+        try {
+
+            List<SheetContext> sheetContextList = buildSheetContextList();
+            if (CollectionUtils.isEmpty(sheetContextList)) {
+                throw new IllegalArgumentException(
+                        "Task(" + context.getTaskKey() + ") delimited worker sheetContextList is empty");
+            }
+
+            FileUtils fileUtils = (FileUtils) SpringContextHolder.getBean(FileUtils.class);
+            if (sheetContextList.size() == 1) {
+                SheetContext sheetContext = sheetContextList.get(0);
+                sheetContext.setSheetNo(1);
+                filePath = fileUtils.getFilePath(exportFormat.getFileType(), wrapper);
+                try (OutputStream out = openOutputStream(filePath, exportFormat.isGzip())) {
+                    writeSheet(sheetContext, exportFormat, out);
+                }
+            } else {
+                filePath = fileUtils.getFilePath(FileTypeEnum.ZIP, wrapper);
+                try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), BUFFER_SIZE))) {
+                    int sheetNo = 0;
+                    for (SheetContext sheetContext : sheetContextList) {
+                        sheetNo++;
+                        sheetContext.setSheetNo(sheetNo);
+                        String entryName = sheetNo + "-" + sheetContext.getName().replaceAll("[\\\\/:*?\"<>|]", "_")
+                                + exportFormat.getEntryType().getFormat();
+                        out.putNextEntry(new ZipEntry(entryName));
+                        writeSheet(sheetContext, exportFormat, out);
+                        out.closeEntry();
+                    }
+                }
+            }
+
+            wrapper.setRst(filePath);
+            super.tell(wrapper);
+
+        } catch (Exception e) {
+            if (log) {
+                logger.error("Task({}) delimited worker execute error", context.getTaskKey());
+                logger.error(e.toString(), e);
+            }
+
+            if (wrapper.getAction() == ActionEnum.MAIL) {
+                MsgMailExcel msg = (MsgMailExcel) wrapper.getMsg();
+                msg.setException(e);
+            }
+
+            if (StringUtils.isNotEmpty(filePath)) {
+                FileUtils.delete(filePath);
+            }
+            filePath = null;
+            wrapper.setRst(null);
+
+            super.tell(wrapper);
+        }
+
+        Object[] args = {context.getTaskKey(), StringUtils.isNotEmpty(filePath), wrapper.getAction(),
+                wrapper.getAction() == ActionEnum.DOWNLOAD ? wrapper.getxId() : wrapper.getxUUID(), filePath, watch.elapsed(TimeUnit.MILLISECONDS)};
+        if (log) {
+            logger.info("Task({}) delimited worker complete status={}, action={}, xid={}, filePath={}, cost={}ms", args);
+        }
+
+        return (T) filePath;
+    }
+
+    private OutputStream openOutputStream(String filePath, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(filePath);
+        if (gzip) {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * 写出单个 sheet，不关闭 out 以便 zip 继续写入后续条目
+     */
+    private void writeSheet(SheetContext sheetContext, ExportFormatEnum exportFormat, OutputStream out) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(UTF8_BOM);
+        new DelimitedSheetWriter(sheetContext, exportFormat).write(writer);
+        writer.flush();
+    }
+}
@@ -48,6 +48,9 @@ public class ExecutorUtils {
             new ThreadFactoryBuilder().setNameFormat("Sheet-worker-%d").setDaemon(true).build(), new ThreadPoolExecutor.CallerRunsPolicy());
 
     public static <T> Future<T> submitWorkbookTask(WorkBookContext context, Logger customLogger) {
+        if (context.getExportFormat() != null && context.getExportFormat().isDelimited()) {
+            return ExecutorUtils.submitWorkbookTask(new DelimitedWorkbookWorker(context), customLogger);
+        }
         return ExecutorUtils.submitWorkbookTask(new WorkbookWorker(context), customLogger);
     }
 
@@ -22,6 +22,7 @@ package edp.davinci.service.excel;
 import edp.core.model.QueryColumn;
 import edp.core.utils.SqlUtils;
 import edp.davinci.core.model.ExcelHeader;
+import edp.davinci.model.Source;
 import lombok.Data;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -46,8 +47,10 @@ public class SheetContext implements Serializable {
     private List<String> excludeColumns;
     private Sheet sheet;
     private Workbook workbook;
+    private WorkbookStyles styles;
     private Boolean contain;
     private SqlUtils sqlUtils;
+    private Source source;
     private Boolean isTable;
     private List<ExcelHeader> excelHeaders;
     private Long dashboardId;
@@ -70,6 +73,7 @@ public class SheetContext implements Serializable {
         private Workbook workbook;
         private Boolean contain;
         private SqlUtils sqlUtils;
+        private Source source;
         private Boolean isTable;
         private List<ExcelHeader> excelHeaders;
         private Long dashboardId;
@@ -133,6 +137,11 @@ public class SheetContext implements Serializable {
             return this;
         }
 
+        public SheetContextBuilder withSource(Source source) {
+            this.source = source;
+            return this;
+        }
+
         public SheetContextBuilder withIsTable(Boolean isTable) {
             this.isTable = isTable;
             return this;
@@ -204,6 +213,7 @@ public class SheetContext implements Serializable {
             sheetContext.setResultLimit(resultLimit);
             sheetContext.setTaskKey(taskKey);
             sheetContext.setCustomLogger(customLogger);
+            sheetContext.setSource(source);
             return sheetContext;
         }
     }
@@ -0,0 +1,235 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.excel;
+
+import edp.core.enums.DataTypeEnum;
+import edp.core.model.QueryColumn;
+import edp.core.utils.CollectionUtils;
+import edp.core.utils.MD5Util;
+import edp.core.utils.SqlUtils;
+import edp.davinci.core.common.SourceQueryScheduler;
+import edp.davinci.core.config.SpringContextHolder;
+import edp.davinci.core.enums.ActionEnum;
+import edp.davinci.core.enums.QueryLaneEnum;
+import edp.davinci.core.utils.SqlParseUtils;
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static edp.core.consts.Consts.QUERY_META_SQL;
+
+/**
+ * 导出查询：执行前置 sql、解析查询列，再按 JDBC 游标逐行读取输出列，SheetWorker 与 DelimitedSheetWriter 共用
+ * 单个 sheet 最多导出 MAX_ROWS 行
+ */
+class SheetQuery {
+
+    static final int MAX_ROWS = 1000000;
+
+    private final SheetContext context;
+
+    private final String worker;
+
+    private final Logger logger;
+
+    private JdbcTemplate template;
+
+    private String md5;
+
+    private int[] columnIndexes;
+
+    private Object[] rowValues;
+
+    /**
+     * @param context
+     * @param worker  日志及异常中的任务描述
+     */
+    SheetQuery(SheetContext context, String worker) {
+        this.context = context;
+        this.worker = worker;
+        this.logger = context.getCustomLogger();
+    }
+
+    /**
+     * 执行前置 sql 并解析查询列，结果写入 context
+     */
+    void prepare() {
+        interrupted();
+        template = context.getSqlUtils().exportJdbcTemplate();
+        propertiesSet(context, template);
+        buildQueryColumn(context, template);
+    }
+
+    /**
+     * 执行查询，每行按 columnNames 的顺序读取到复用的数组后交给 handler
+     *
+     * @param columnNames 输出列
+     * @param handler
+     * @return 行数
+     * @throws Exception
+     */
+    long query(String[] columnNames, RowHandler handler) throws Exception {
+        SqlUtils utils = context.getSqlUtils();
+        int resultLimit = context.getResultLimit();
+        template.setMaxRows(resultLimit > 0 && resultLimit <= MAX_ROWS ? resultLimit : MAX_ROWS);
+
+        // special for mysql
+        if (utils.getDataTypeEnum() == DataTypeEnum.MYSQL) {
+            template.setFetchSize(Integer.MIN_VALUE);
+        }
+
+        String sql = context.getQuerySql().get(context.getQuerySql().size() - 1);
+        sql = SqlParseUtils.rebuildSqlWithFragment(sql);
+        md5 = MD5Util.getMD5(sql, true, 16);
+        Set<String> queryFromsAndJoins = SqlUtils.getQueryFromsAndJoins(sql);
+        if (null != logger) {
+            logger.info("Task({}) {} query start sql:{}, md5:{}", context.getTaskKey(), worker, utils.formatSql(sql), md5);
+        }
+
+        final AtomicLong count = new AtomicLong(0);
+        final String querySql = sql;
+        getQueryScheduler().execute(context.getSource(), getQueryLane(context), () -> {
+            template.query(querySql, rs -> {
+
+                interrupted();
+
+                if (null == columnIndexes) {
+                    buildRowPlan(rs, queryFromsAndJoins, columnNames);
+                }
+                for (int j = 0; j < columnIndexes.length; j++) {
+                    rowValues[j] = columnIndexes[j] > 0 ? rs.getObject(columnIndexes[j]) : null;
+                }
+                try {
+                    handler.onRow(rowValues);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count.incrementAndGet();
+            });
+            return null;
+        });
+
+        if (null != logger) {
+            logger.info("Task({}) {} query finish md5:{}, count:{}", context.getTaskKey(), worker, md5, count.get());
+        }
+        return count.get();
+    }
+
+    String getMd5() {
+        return md5;
+    }
+
+    void interrupted() {
+        if (Thread.interrupted()) {
+            if (null != logger) {
+                logger.error("Task({}) {} interrupted", context.getTaskKey(), worker);
+            }
+            throw new RuntimeException("Task(" + context.getTaskKey() + ") " + worker + " interrupted");
+        }
+    }
+
+    /**
+     * 根据第一行的元数据计算每个输出列对应的结果集下标，之后逐行按下标读取到复用的行缓冲中
+     * 列名按 SqlUtils.getColumnLabel 处理，重名时取最后一列，取值与按列名读取一致（对应第一个同名列）
+     */
+    private void buildRowPlan(ResultSet rs, Set<String> queryFromsAndJoins, String[] columnNames) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        Map<String, Integer> labelIndexes = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            labelIndexes.put(SqlUtils.getColumnLabel(queryFromsAndJoins, label), rs.findColumn(label));
+        }
+
+        int[] indexes = new int[columnNames.length];
+        for (int j = 0; j < columnNames.length; j++) {
+            Integer index = labelIndexes.get(columnNames[j]);
+            indexes[j] = null == index ? 0 : index;
+        }
+        rowValues = new Object[columnNames.length];
+        columnIndexes = indexes;
+    }
+
+    private static SourceQueryScheduler getQueryScheduler() {
+        return (SourceQueryScheduler) SpringContextHolder.getBean(SourceQueryScheduler.class);
+    }
+
+    /**
+     * 定时邮件与手动下载分别进入不同的后台通道
+     */
+    private static QueryLaneEnum getQueryLane(SheetContext context) {
+        return context.getWrapper().getAction() == ActionEnum.MAIL ? QueryLaneEnum.SCHEDULE : QueryLaneEnum.EXPORT;
+    }
+
+    private static void propertiesSet(SheetContext context, JdbcTemplate template) {
+        if (CollectionUtils.isEmpty(context.getExecuteSql())) {
+            return;
+        }
+
+        context.getExecuteSql().stream().filter(sql -> sql != null).forEach(sql -> {
+            template.execute(sql);
+        });
+    }
+
+    private static void buildQueryColumn(SheetContext context, JdbcTemplate template) {
+        template.setMaxRows(1);
+        String sql = context.getQuerySql().get(context.getQuerySql().size() - 1);
+        sql = String.format(QUERY_META_SQL, sql);
+        sql = SqlParseUtils.rebuildSqlWithFragment(sql);
+        Set<String> queryFromsAndJoins = SqlUtils.getQueryFromsAndJoins(sql);
+        template.query(sql, rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<QueryColumn> totalColumns = new ArrayList<>();
+            List<QueryColumn> queryColumns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String label = SqlUtils.getColumnLabel(queryFromsAndJoins, metaData.getColumnLabel(i));
+                totalColumns.add(new QueryColumn(label, metaData.getColumnTypeName(i)));
+                if (!CollectionUtils.isEmpty(context.getExcludeColumns()) && context.getExcludeColumns().contains(label)) {
+                    continue;
+                }
+                queryColumns.add(new QueryColumn(label, metaData.getColumnTypeName(i)));
+            }
+            if (CollectionUtils.isEmpty(totalColumns) || CollectionUtils.isEmpty(queryColumns)) {
+                throw new IllegalArgumentException("Can not find any query column, widgetId=" + context.getWidgetId()
+                        + ", sql=" + context.getQuerySql().get(context.getQuerySql().size() - 1));
+            }
+            context.setTotalColumns(totalColumns);
+            context.setQueryColumns(queryColumns);
+            return context;
+        });
+    }
+
+    interface RowHandler {
+
+        /**
+         * values 为复用的行缓冲，回调返回后即被下一行覆盖
+         *
+         * @param values
+         * @throws IOException
+         */
+        void onRow(Object[] values) throws IOException;
+    }
+}
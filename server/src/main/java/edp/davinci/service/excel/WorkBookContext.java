@@ -19,6 +19,7 @@
 
 package edp.davinci.service.excel;
 
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.model.User;
 import lombok.Data;
 import org.slf4j.Logger;
@@ -48,6 +49,8 @@ public class WorkBookContext implements Serializable {
 
     private Logger customLogger;
 
+    private ExportFormatEnum exportFormat;
+
     private WorkBookContext() {
 
     }
@@ -59,6 +62,7 @@ public class WorkBookContext implements Serializable {
         private int resultLimit;
         private String taskKey;
         private Logger customLogger;
+        private ExportFormatEnum exportFormat;
 
         private WorkBookContextBuilder() {
         
@@ -98,6 +102,11 @@ public class WorkBookContext implements Serializable {
             return this;
         }
 
+        public WorkBookContextBuilder withExportFormat(ExportFormatEnum exportFormat) {
+            this.exportFormat = exportFormat;
+            return this;
+        }
+
         public WorkBookContext build() {
             WorkBookContext workBookContext = new WorkBookContext();
             workBookContext.setWrapper(wrapper);
@@ -106,6 +115,7 @@ public class WorkBookContext implements Serializable {
             workBookContext.setResultLimit(resultLimit);
             workBookContext.setTaskKey(taskKey);
             workBookContext.setCustomLogger(customLogger);
+            workBookContext.setExportFormat(exportFormat);
             return workBookContext;
         }
     }
@@ -0,0 +1,96 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.excel;
+
+import org.apache.poi.ss.usermodel.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工作簿级别的样式注册表
+ * <p>
+ * 同一工作簿的所有 sheet 共用表头、默认、常规样式，数据格式样式按格式串去重（Excel 样式数上限约 64000）；
+ * 样式保存在工作簿的 StylesTable 中，创建时以工作簿加锁，支持多个 sheet 并行写入
+ */
+public class WorkbookStyles {
+
+    private final Workbook workbook;
+
+    private final DataFormat format;
+
+    private final CellStyle header;
+
+    private final CellStyle text;
+
+    private final CellStyle general;
+
+    private final Map<String, CellStyle> dataStyles = new HashMap<>();
+
+    public WorkbookStyles(Workbook workbook) {
+        this.workbook = workbook;
+        synchronized (workbook) {
+            format = workbook.createDataFormat();
+            //默认格式
+            text = workbook.createCellStyle();
+            text.setDataFormat(format.getFormat("@"));
+            //常规格式
+            general = workbook.createCellStyle();
+            general.setDataFormat(format.getFormat("General"));
+            //表头格式 粗体居中
+            header = workbook.createCellStyle();
+            Font font = workbook.createFont();
+            font.setFontName("黑体");
+            font.setBold(true);
+            header.setFont(font);
+            header.setDataFormat(format.getFormat("@"));
+            header.setAlignment(HorizontalAlignment.CENTER);
+            header.setVerticalAlignment(VerticalAlignment.CENTER);
+        }
+    }
+
+    public CellStyle getHeader() {
+        return header;
+    }
+
+    public CellStyle getText() {
+        return text;
+    }
+
+    public CellStyle getGeneral() {
+        return general;
+    }
+
+    /**
+     * 获取指定数据格式的样式，相同格式只创建一次
+     *
+     * @param dataFormat
+     * @return
+     */
+    public CellStyle getDataStyle(String dataFormat) {
+        synchronized (workbook) {
+            return dataStyles.computeIfAbsent(dataFormat, key -> {
+                CellStyle dataStyle = workbook.createCellStyle();
+                dataStyle.setDataFormat(format.getFormat(key));
+                return dataStyle;
+            });
+        }
+    }
+}
@@ -63,7 +63,7 @@ import java.util.concurrent.*;
  */
 public class WorkbookWorker<T> extends MsgNotifier implements Callable {
 
-    private WorkBookContext context;
+    protected WorkBookContext context;
 
     public WorkbookWorker(WorkBookContext context) {
         this.context = context;
@@ -91,7 +91,10 @@ public class WorkbookWorker<T> extends MsgNotifier implements Callable {
                         "Task(" + context.getTaskKey() + ") workbook worker sheetContextList is empty");
             }
 
+            // 每个 sheet 的行数据由 SXSSF 流式写入各自的临时文件，sheet 之间并行生成，
+            // 工作簿级别的样式由 WorkbookStyles 加锁创建并在 sheet 间共用，最终 write 时一次性组装为 xlsx
             wb = new SXSSFWorkbook(1000);
+            WorkbookStyles styles = new WorkbookStyles(wb);
             List<Future> futures = Lists.newArrayList();
             int sheetNo = 0;
             for (SheetContext sheetContext : sheetContextList) {
@@ -100,6 +103,7 @@ public class WorkbookWorker<T> extends MsgNotifier implements Callable {
                 Sheet sheet = wb.createSheet(name);
                 sheetContext.setSheet(sheet);
                 sheetContext.setWorkbook(wb);
+                sheetContext.setStyles(styles);
                 sheetContext.setSheetNo(sheetNo);
                 Future<Boolean> future = ExecutorUtils.submitSheetTask(sheetContext, context.getCustomLogger());
                 futures.add(future);
@@ -198,7 +202,7 @@ public class WorkbookWorker<T> extends MsgNotifier implements Callable {
         }
     }
 
-    private List<SheetContext> buildSheetContextList() throws Exception {
+    protected List<SheetContext> buildSheetContextList() throws Exception {
         List<SheetContext> sheetContextList = Lists.newArrayList();
         for (WidgetContext context : context.getWidgets()) {
 
@@ -258,6 +262,7 @@ public class WorkbookWorker<T> extends MsgNotifier implements Callable {
                     .withExcludeColumns(sqlContext.getExcludeColumns())
                     .withContain(Boolean.FALSE)
                     .withSqlUtils(sqlUtils)
+                    .withSource(viewWithProjectAndSource.getSource())
                     .withIsTable(isTable)
                     .withExcelHeaders(excelHeaders)
                     .withDashboardId(dashboard != null ? dashboard.getId() : null)
@@ -24,6 +24,7 @@ import edp.core.exception.UnAuthorizedException;
 import edp.davinci.core.enums.ActionEnum;
 import edp.davinci.core.enums.DownloadTaskStatus;
 import edp.davinci.core.enums.DownloadType;
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.core.enums.LogNameEnum;
 import edp.davinci.dao.DownloadRecordMapper;
 import edp.davinci.dao.UserMapper;
@@ -98,7 +99,7 @@ public class DownloadServiceImpl extends DownloadCommonService implements Downlo
     }
 
     @Override
-    public Boolean submit(DownloadType type, Long id, User user, List<DownloadViewExecuteParam> params) {
+    public Boolean submit(DownloadType type, Long id, User user, List<DownloadViewExecuteParam> params, ExportFormatEnum exportFormat) {
         try {
             List<WidgetContext> widgetList = getWidgetContexts(type, id, user, params);
             DownloadRecord record = new DownloadRecord();
@@ -116,6 +117,7 @@ public class DownloadServiceImpl extends DownloadCommonService implements Downlo
                     .withResultLimit(resultLimit)
                     .withTaskKey("DownloadTask_" + id)
                     .withCustomLogger(downloadLogger)
+                    .withExportFormat(exportFormat)
                     .build();
 
             ExecutorUtils.submitWorkbookTask(workBookContext, downloadLogger);
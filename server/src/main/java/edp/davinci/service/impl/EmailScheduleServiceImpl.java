@@ -31,6 +31,7 @@ import edp.core.utils.MailUtils;
 import edp.davinci.core.common.Constants;
 import edp.davinci.core.enums.ActionEnum;
 import edp.davinci.core.enums.CronJobMediaType;
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.core.enums.FileTypeEnum;
 import edp.davinci.core.enums.LogNameEnum;
 import edp.davinci.dao.*;
@@ -142,7 +143,7 @@ public class EmailScheduleServiceImpl extends BaseScheduleService implements Sch
         List<MailAttachment> attachmentList = new ArrayList<>();
 
         if (!CollectionUtils.isEmpty(excels)) {
-            excels.forEach(excel -> attachmentList.add(new MailAttachment(excel.getName() + FileTypeEnum.XLSX.getFormat(), excel.getFile())));
+            excels.forEach(excel -> attachmentList.add(new MailAttachment(excel.getName() + FileTypeEnum.ofPath(excel.getFile().getPath()).getFormat(), excel.getFile())));
         }
 
         if (!CollectionUtils.isEmpty(images)) {
@@ -193,6 +194,12 @@ public class EmailScheduleServiceImpl extends BaseScheduleService implements Sch
 
         Map<String, WorkBookContext> workBookContextMap = new HashMap<>();
 
+        ExportFormatEnum exportFormat = ExportFormatEnum.getExportFormat(cronJobConfig.getExportFormat());
+        if (exportFormat == null) {
+            scheduleLogger.warn("CronJob({}) unknown export format:{}, use xlsx", jobId, cronJobConfig.getExportFormat());
+            exportFormat = ExportFormatEnum.XLSX;
+        }
+
         Map<String, Integer> vizOrderMap = new HashMap<>();
         Map<Long, Map<Long, Integer>> displayPageMap = new HashMap<>();
         Map<String, Integer> excelEntityOrderMap = new HashMap<>();
@@ -244,6 +251,7 @@ public class EmailScheduleServiceImpl extends BaseScheduleService implements Sch
                                 .withResultLimit(resultLimit)
                                 .withTaskKey("Schedule_" + jobId)
                                 .withCustomLogger(scheduleLogger)
+                                .withExportFormat(exportFormat)
                                 .build();
 
                         int page = slidePageMap.get(slideId);
@@ -283,6 +291,7 @@ public class EmailScheduleServiceImpl extends BaseScheduleService implements Sch
                             .withResultLimit(resultLimit)
                             .withTaskKey("Schedule_" + jobId)
                             .withCustomLogger(scheduleLogger)
+                            .withExportFormat(exportFormat)
                             .build();
 
                     workBookContextMap.put(dashboard.getName(), workBookContext);
@@ -31,6 +31,7 @@ import edp.davinci.core.enums.CheckEntityEnum;
 import edp.davinci.core.enums.LogNameEnum;
 import edp.davinci.core.enums.UserOrgRoleEnum;
 import edp.davinci.core.model.TokenEntity;
+import edp.davinci.core.service.ProjectPermissionCache;
 import edp.davinci.dao.*;
 import edp.davinci.dto.organizationDto.*;
 import edp.davinci.dto.userDto.UserBaseInfo;
@@ -78,6 +79,9 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
     @Autowired
     private TokenUtils tokenUtils;
 
+    @Autowired
+    private ProjectPermissionCache projectPermissionCache;
+
     @Autowired
     private MailUtils mailUtils;
 
@@ -183,6 +187,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
                 log.info("Update organization error");
                 throw new ServerException("Update organization error");
             }
+            projectPermissionCache.evictOrganization(id);
 
             optLogger.info("Organization({}) is update by user({}), origin:{}", organization.toString(), user.getId(), origin);
             return true;
@@ -257,6 +262,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
         if (organizationMapper.update(organization) <= 0) {
             throw new ServerException("Organization avatar update fail");
         }
+        projectPermissionCache.evictOrganization(id);
 
         Map<String, String> map = new HashMap<>();
         map.put("avatar", avatar);
@@ -290,6 +296,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
         relUserOrganizationMapper.deleteByOrgId(id);
         roleMapper.deleteByOrg(id);
         organizationMapper.deleteById(id);
+        projectPermissionCache.evictOrganization(id);
 
         optLogger.info("Organization({}) is delete by user({})", organization.toString(), user.getId());
         return true;
@@ -435,6 +442,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
                         .map(u -> new RelUserOrganization(orgId, u.getId(), UserOrgRoleEnum.MEMBER.getRole()))
                         .collect(Collectors.toSet());
                 int newMembers = relUserOrganizationMapper.insertBatch(relUserOrgSet);
+                projectPermissionCache.evictOrganization(orgId);
                 if (newMembers > 0) {
                     organization.setMemberNum(organization.getMemberNum() + newMembers);
                     organizationMapper.updateMemberNum(organization);
@@ -511,6 +519,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
         if (relUserOrganizationMapper.insert(rel) <= 0) {
             throw new ServerException("unknown fail");
         }
+        projectPermissionCache.evictOrganization(orgId);
 
         // 修改成员人数
         organization.setMemberNum(organization.getMemberNum() + 1);
@@ -573,6 +582,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
         RelUserOrganization rel = new RelUserOrganization(orgId, memberId, UserOrgRoleEnum.MEMBER.getRole());
         rel.createdBy(memberId);
         relUserOrganizationMapper.insert(rel);
+        projectPermissionCache.evictOrganization(orgId);
         // 修改成员人数
         organization.setMemberNum(organization.getMemberNum() + 1);
         organizationMapper.updateMemberNum(organization);
@@ -610,6 +620,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
         if (relUserOrganizationMapper.deleteById(relationId) <= 0) {
             throw new ServerException("unknown fail");
         }
+        projectPermissionCache.evictOrganization(orgId);
 
         // 更新组织成员数量
         int memberNum = organization.getMemberNum();
@@ -671,6 +682,7 @@ public class OrganizationServiceImpl extends BaseEntityService implements Organi
         if (relUserOrganizationMapper.updateMemberRole(rel) <= 0) {
             throw new ServerException("Unknown fail");
         }
+        projectPermissionCache.evictOrganization(orgId);
 
         optLogger.info("RelUserOrganization({}) is update by user({}), origin:{}", rel.toString(), user.getId(), origin);
         return true;
@@ -33,6 +33,8 @@ import edp.davinci.core.enums.CronJobStatusEnum;
 import edp.davinci.core.enums.LogNameEnum;
 import edp.davinci.core.enums.UserOrgRoleEnum;
 import edp.davinci.core.enums.UserPermissionEnum;
+import edp.davinci.core.service.ProjectPermissionCache;
+import edp.davinci.core.service.ProjectPermissionCache.ProjectAccess;
 import edp.davinci.dao.*;
 import edp.davinci.dto.organizationDto.OrganizationInfo;
 import edp.davinci.dto.projectDto.*;
@@ -107,6 +109,9 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
     @Autowired
     private RelRoleViewMapper relRoleViewMapper;
 
+    @Autowired
+    private ProjectPermissionCache projectPermissionCache;
+
     private static final CheckEntityEnum entity = CheckEntityEnum.PROJECT;
     
     @Override
@@ -314,6 +319,7 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
         organizationMapper.updateProjectNum(organization);
 
         projectMapper.deleteBeforeOrgRole(project.getId(), beforeOrgId);
+        projectPermissionCache.evictProject(project.getId());
 
         return project;
     }
@@ -356,6 +362,7 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
             log.error("Delete project({}) fail", id);
             throw new ServerException("Delete project fail");
         }
+        projectPermissionCache.evictProject(project.getId());
         
         optLogger.info("Project({}) is delete by user({})", project.toString(), user.getId());
         Organization organization = organizationMapper.getById(project.getOrgId());
@@ -402,6 +409,7 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
 	            log.info("Update project fail, projectUpdate:{}", projectUpdate.toString());
 	            throw new ServerException("Update project fail, unspecified error");
 	        }
+	        projectPermissionCache.evictProject(project.getId());
 	        
 	        optLogger.info("Project({}) is update to {} by user({})", originInfo, project.baseInfoToString(), user.getId());
 	        return project;
@@ -496,6 +504,7 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
 		if (relProjectAdminMapper.insertBatch(relProjectAdmins) <= 0) {
 			throw new ServerException("Unspecified error");
 		}
+		projectPermissionCache.evictProject(id);
 
 		Map<Long, User> userMap = new HashMap<>();
 		admins.forEach(u -> userMap.put(u.getId(), u));
@@ -539,6 +548,7 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
             log.error("Delete rel project admin fail, relationId:{}", relationId);
             throw new ServerException("Unspecified error");
         }
+        projectPermissionCache.evictProject(relProjectAdmin.getProjectId());
         
         optLogger.info("RelProjectAdmin({}) is delete by user({})", relProjectAdmin.toString(), user.getId());
         return true;
@@ -558,16 +568,15 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
      */
     @Override
     public ProjectDetail getProjectDetail(Long id, User user, boolean modify) throws NotFoundException, UnAuthorizedException {
-        ProjectDetail projectDetail = projectMapper.getProjectDetail(id);
+        ProjectDetail projectDetail = projectPermissionCache.getProjectDetail(id, projectMapper::getProjectDetail);
         if (null == projectDetail) {
             log.error("Project({}) is not found", id);
             throw new NotFoundException("Project is not found");
         }
 
-        RelUserOrganization rel = relUserOrganizationMapper.getRel(user.getId(), projectDetail.getOrgId());
-        RelProjectAdmin relProjectAdmin = relProjectAdminMapper.getByProjectAndUser(id, user.getId());
+        ProjectAccess access = getProjectAccess(projectDetail, user);
         boolean isCreator = projectDetail.getUserId().equals(user.getId()) && !projectDetail.getIsTransfer();
-        boolean notOwner = !isCreator && null == relProjectAdmin && (null == rel || rel.getRole() != UserOrgRoleEnum.OWNER.getRole());
+        boolean notOwner = !isCreator && !access.isProjectAdmin() && !isOrgOwner(access);
         if (modify) {
             //项目的创建人和当前项目对应组织的owner可以修改
             if (notOwner) {
@@ -609,6 +618,7 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
 
 		if (CollectionUtils.isEmpty(roleList)) {
 			relRoleProjectMapper.deleteByProjectId(id);
+			projectPermissionCache.evictProject(id);
 			return null;
 		}
 
@@ -632,10 +642,12 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
 				.collect(Collectors.toList());
 
 		if (CollectionUtils.isEmpty(list)) {
+			projectPermissionCache.evictProject(id);
 			return null;
 		}
 
 		relRoleProjectMapper.insertBatch(list);
+		projectPermissionCache.evictProject(id);
 		List<RoleProject> roleProjects = list.stream().map(r -> {
 			RoleProject roleProject = new RoleProject(projectDetail);
 			BeanUtils.copyProperties(r, roleProject);
@@ -726,9 +738,10 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
 			return ProjectPermission.adminPermission();
 		}
 
-		UserMaxProjectPermission permission = relRoleProjectMapper.getMaxPermission(projectDetail.getId(),
-				user.getId());
-		if (null != permission && null != permission.getProjectId()) {
+		UserMaxProjectPermission maxPermission = getProjectAccess(projectDetail, user).getMaxPermission();
+		if (null != maxPermission && null != maxPermission.getProjectId()) {
+			UserMaxProjectPermission permission = new UserMaxProjectPermission();
+			BeanUtils.copyProperties(maxPermission, permission);
 			return permission;
 		}
 
@@ -782,21 +795,39 @@ public class ProjectServiceImpl extends BaseEntityService implements ProjectServ
         }
 
         //project所在org的owner
-        RelUserOrganization orgRel = relUserOrganizationMapper.getRel(user.getId(), projectDetail.getOrgId());
-        if (null == orgRel) {
+        ProjectAccess access = getProjectAccess(projectDetail, user);
+        if (null == access.getOrgRole()) {
             return false;
         }
 
-        if (orgRel.getRole() == UserOrgRoleEnum.OWNER.getRole()) {
+        if (isOrgOwner(access)) {
             return true;
         }
 
         //project的admin
-        RelProjectAdmin projectAdmin = relProjectAdminMapper.getByProjectAndUser(projectDetail.getId(), user.getId());
-        if (null != projectAdmin) {
-            return true;
-        }
+        return access.isProjectAdmin();
+    }
+
+    /**
+     * 获取user在project上的组织角色、管理员关系及最大权限
+     *
+     * @param projectDetail
+     * @param user
+     * @return
+     */
+    private ProjectAccess getProjectAccess(ProjectDetail projectDetail, User user) {
+        Long projectId = projectDetail.getId();
+        Long orgId = projectDetail.getOrgId();
+        Long userId = user.getId();
+        return projectPermissionCache.getAccess(userId, projectId, () -> {
+            RelUserOrganization orgRel = relUserOrganizationMapper.getRel(userId, orgId);
+            RelProjectAdmin projectAdmin = relProjectAdminMapper.getByProjectAndUser(projectId, userId);
+            UserMaxProjectPermission maxPermission = relRoleProjectMapper.getMaxPermission(projectId, userId);
+            return new ProjectAccess(projectId, orgId, null == orgRel ? null : orgRel.getRole(), null != projectAdmin, maxPermission);
+        });
+    }
 
-        return false;
+    private boolean isOrgOwner(ProjectAccess access) {
+        return null != access.getOrgRole() && access.getOrgRole() == UserOrgRoleEnum.OWNER.getRole();
     }
 }
@@ -25,6 +25,7 @@ import edp.core.exception.UnAuthorizedException;
 import edp.core.utils.CollectionUtils;
 import edp.davinci.core.enums.LogNameEnum;
 import edp.davinci.core.enums.UserOrgRoleEnum;
+import edp.davinci.core.service.ProjectPermissionCache;
 import edp.davinci.core.enums.UserPermissionEnum;
 import edp.davinci.core.enums.VizVisibilityEnum;
 import edp.davinci.dao.*;
@@ -108,6 +109,9 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private DashboardPortalService dashboardPortalService;
 
+    @Autowired
+    private ProjectPermissionCache projectPermissionCache;
+
 
     /**
      * 新建Role
@@ -199,6 +203,7 @@ public class RoleServiceImpl implements RoleService {
 
             relRoleDisplaySlideWidgetMapper.deleteByRoleId(id);
 
+            projectPermissionCache.evictOrganization(role.getOrgId());
             return true;
         } else {
             log.info("Delete role fail, role:{}", role.toString());
@@ -279,8 +284,9 @@ public class RoleServiceImpl implements RoleService {
     @Transactional
     public List<RelRoleMember> addMembers(Long id, List<Long> memberIds, User user) throws ServerException, UnAuthorizedException, NotFoundException {
 
+        Role role = null;
         try {
-            getRole(id, user, true);
+            role = getRole(id, user, true);
         } catch (NotFoundException e) {
             throw e;
         } catch (UnAuthorizedException e) {
@@ -289,6 +295,7 @@ public class RoleServiceImpl implements RoleService {
 
         if (CollectionUtils.isEmpty(memberIds)) {
             relRoleUserMapper.deleteByRoleId(id);
+            projectPermissionCache.evictOrganization(role.getOrgId());
             return null;
         }
 
@@ -305,6 +312,7 @@ public class RoleServiceImpl implements RoleService {
                 .collect(Collectors.toList());
 
         int i = relRoleUserMapper.insertBatch(relRoleUsers);
+        projectPermissionCache.evictOrganization(role.getOrgId());
         if (i > 0) {
             Map<Long, User> map = new HashMap<>();
             members.forEach(m -> map.put(m.getId(), m));
@@ -337,8 +345,9 @@ public class RoleServiceImpl implements RoleService {
             throw new NotFoundException("Member not found");
         }
 
+        Role role = null;
         try {
-            getRole(relRoleUser.getRoleId(), user, true);
+            role = getRole(relRoleUser.getRoleId(), user, true);
         } catch (NotFoundException e) {
             throw e;
         } catch (UnAuthorizedException e) {
@@ -352,6 +361,7 @@ public class RoleServiceImpl implements RoleService {
 
         int i = relRoleUserMapper.deleteById(relationId);
         if (i > 0) {
+            projectPermissionCache.evictOrganization(role.getOrgId());
             optLogger.info("RelRoleUser({}) is delete by user({})", relRoleUser.toString(), user.getId());
             return true;
         } else {
@@ -365,7 +375,7 @@ public class RoleServiceImpl implements RoleService {
     @Transactional
     public List<RelRoleMember> updateMembers(Long id, List<Long> memberIds, User user) throws ServerException, UnAuthorizedException, NotFoundException {
 
-        getRole(id, user, true);
+        Role role = getRole(id, user, true);
 
         List<User> users = userMapper.getByIds(memberIds);
         if (CollectionUtils.isEmpty(users)) {
@@ -384,6 +394,7 @@ public class RoleServiceImpl implements RoleService {
             relRoleUserMapper.deleteByRoleIdAndMemberIds(id, deleteIds);
         }
         relRoleUserMapper.insertBatch(collect);
+        projectPermissionCache.evictOrganization(role.getOrgId());
 
         optLogger.info("Replace role({}) member by user({})", id, user.getId());
         return relRoleUserMapper.getMembersByRoleId(id);
@@ -453,6 +464,7 @@ public class RoleServiceImpl implements RoleService {
 
         relRoleProjectMapper.insert(relRoleProject);
         if (null != relRoleProject.getId() && relRoleProject.getId().longValue() > 0L) {
+            projectPermissionCache.evictProject(projectId);
             optLogger.info("Create relRoleProject({}) is update by user({})", relRoleProject.toString(), user.getId());
             RoleProject roleProject = new RoleProject(project);
             BeanUtils.copyProperties(relRoleProject, roleProject);
@@ -503,6 +515,7 @@ public class RoleServiceImpl implements RoleService {
             relRolePortalMapper.deleteByRoleAndProject(roleId, projectId);
             relRoleSlideMapper.deleteByRoleAndProject(roleId, projectId);
             relRoleViewMapper.deleteByRoleAndProject(roleId, projectId);
+            projectPermissionCache.evictProject(projectId);
             
             optLogger.info("RelRoleProject({}) is delete by user({})", relRoleProject.toString(), user.getId());
             return true;
@@ -585,6 +598,7 @@ public class RoleServiceImpl implements RoleService {
         int i = relRoleProjectMapper.update(relRoleProject);
 
         if (i > 0) {
+            projectPermissionCache.evictProject(projectId);
             optLogger.info("RelRoleProject({}) is update by user({}), origin:{}", relRoleProject.toString(), user.getId(), origin);
             return true;
         } else {
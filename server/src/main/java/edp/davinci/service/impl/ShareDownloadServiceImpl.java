@@ -25,6 +25,7 @@ import edp.davinci.core.common.ErrorMsg;
 import edp.davinci.core.enums.ActionEnum;
 import edp.davinci.core.enums.DownloadTaskStatus;
 import edp.davinci.core.enums.DownloadType;
+import edp.davinci.core.enums.ExportFormatEnum;
 import edp.davinci.dao.ShareDownloadRecordMapper;
 import edp.davinci.dto.projectDto.ProjectDetail;
 import edp.davinci.dto.projectDto.ProjectPermission;
@@ -56,7 +57,7 @@ public class ShareDownloadServiceImpl extends DownloadCommonService implements S
     private ShareService shareService;
 
     @Override
-    public boolean submit(DownloadType downloadType, String uuid, List<DownloadViewExecuteParam> params) {
+    public boolean submit(DownloadType downloadType, String uuid, List<DownloadViewExecuteParam> params, ExportFormatEnum exportFormat) {
         ShareFactor shareFactor = ShareAuthAspect.SHARE_FACTOR_THREAD_LOCAL.get();
         try {
             List<WidgetContext> widgetList = getWidgetContexts(downloadType, shareFactor.getEntityId(), shareFactor.getUser(), params);
@@ -75,6 +76,7 @@ public class ShareDownloadServiceImpl extends DownloadCommonService implements S
                     .withUser(shareFactor.getUser())
                     .withResultLimit(resultLimit)
                     .withTaskKey("ShareDownload_" + uuid)
+                    .withExportFormat(exportFormat)
                     .build();
             ExecutorUtils.submitWorkbookTask(workBookContext, null);
             log.info("Share download task submit:{}", wrapper);
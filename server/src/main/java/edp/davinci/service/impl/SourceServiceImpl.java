@@ -33,13 +33,17 @@ import edp.core.model.JdbcSourceInfo.JdbcSourceInfoBuilder;
 import edp.core.model.QueryColumn;
 import edp.core.model.TableInfo;
 import edp.core.utils.*;
-import edp.davinci.core.common.Constants;
+import edp.davinci.core.common.BatchInsertPipeline;
+import edp.davinci.core.common.BulkLoadScheduler;
+import edp.davinci.core.common.DataUploadHandler;
+import edp.davinci.core.common.LocalInfileLoader;
+import edp.davinci.core.common.SourceQueryScheduler;
 import edp.davinci.core.enums.*;
-import edp.davinci.core.model.DataUploadEntity;
 import edp.davinci.core.model.RedisMessageEntity;
 import edp.davinci.core.utils.CsvUtils;
 import edp.davinci.core.utils.ExcelUtils;
 import edp.davinci.core.utils.SourcePasswordEncryptUtils;
+import edp.davinci.core.utils.SqlTemplateUtils;
 import edp.davinci.dao.SourceMapper;
 import edp.davinci.dao.ViewMapper;
 import edp.davinci.dto.projectDto.ProjectDetail;
@@ -56,19 +60,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import org.stringtemplate.v4.ST;
-import org.stringtemplate.v4.STGroup;
-import org.stringtemplate.v4.STGroupFile;
 
+import java.io.Closeable;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import static edp.core.consts.Consts.AT_SYMBOL;
 import static edp.core.consts.Consts.JDBC_DATASOURCE_DEFAULT_VERSION;
@@ -98,6 +98,18 @@ public class SourceServiceImpl extends BaseEntityService implements SourceServic
     @Autowired
     private RedisUtils redisUtils;
 
+    @Autowired
+    private SqlTemplateUtils sqlTemplateUtils;
+
+    @Autowired
+    private BulkLoadScheduler bulkLoadScheduler;
+
+    @Autowired
+    private SourceQueryScheduler sourceQueryScheduler;
+
+    @Value("${source.upload.load-data-local:false}")
+    private boolean uploadLoadDataLocal;
+
     private static final CheckEntityEnum entity = CheckEntityEnum.SOURCE;
 
     @Override
@@ -358,6 +370,7 @@ public class SourceServiceImpl extends BaseEntityService implements SourceServic
         if (sourceMapper.deleteById(id) == 1) {
             optLogger.info("Source({}) is delete by user({})", source.toString(), user.getId());
             releaseSource(source);
+            sourceQueryScheduler.evict(id);
             return true;
         }
 
@@ -483,24 +496,21 @@ public class SourceServiceImpl extends BaseEntityService implements SourceServic
             throw new ServerException("Unsupported data source, url:" + source.getJdbcUrl());
         }
 
+        DataUploadInserter inserter = new DataUploadInserter(sourceDataUpload, source,
+                uploadLoadDataLocal && type.equals(FileTypeEnum.CSV.getType()));
         try {
-            DataUploadEntity dataUploadEntity = null;
             if (type.equals(FileTypeEnum.CSV.getType())) {
-                // 解析csv文件
-                dataUploadEntity = CsvUtils.parseCsvWithFirstAsHeader(file, "UTF-8");
+                // 流式解析csv文件
+                CsvUtils.readCsvWithFirstAsHeader(file, "UTF-8", inserter);
             } else {
-                // 解析excel文件
-                dataUploadEntity = ExcelUtils.parseExcelWithFirstAsHeader(file);
-            }
-
-            if (null != dataUploadEntity && !CollectionUtils.isEmpty(dataUploadEntity.getHeaders())) {
-                // 建表
-                createTable(dataUploadEntity.getHeaders(), sourceDataUpload, source);
-                // 传输数据
-                insertData(dataUploadEntity.getHeaders(), dataUploadEntity.getValues(), sourceDataUpload, source);
+                // 流式解析excel文件
+                ExcelUtils.readExcelWithFirstAsHeader(file, inserter);
             }
+            inserter.finish();
         } catch (Exception e) {
             throw new ServerException(e.getMessage());
+        } finally {
+            inserter.close();
         }
 
         return true;
@@ -635,6 +645,34 @@ public class SourceServiceImpl extends BaseEntityService implements SourceServic
         return sqlUtils.init(source).testConnection();
     }
 
+    /**
+     * 数据源健康状况：连接池状态、查询排队情况及进行中的上传任务进度
+     *
+     * @param id
+     * @param user
+     * @return
+     */
+    @Override
+    public Map<String, Object> getSourceHealth(Long id, User user)
+            throws NotFoundException, UnAuthorizedException, ServerException {
+
+        Source source = getSource(id);
+
+        ProjectPermission projectPermission = getProjectPermission(source.getProjectId(), user);
+        if (projectPermission.getSourcePermission() == UserPermissionEnum.HIDDEN.getPermission()) {
+            throw new UnAuthorizedException();
+        }
+
+        Map<String, Object> pool = sqlUtils.init(source).getPoolStats();
+
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", null == pool ? "UNKNOWN" : pool.get("status"));
+        health.put("pool", pool);
+        health.put("query", sourceQueryScheduler.getStats(id));
+        health.put("upload", bulkLoadScheduler.getStats(String.valueOf(id)));
+        return health;
+    }
+
     /**
      * 释放数据源
      *
@@ -683,166 +721,285 @@ public class SourceServiceImpl extends BaseEntityService implements SourceServic
     }
 
     /**
-     * 建表
+     * 校验目标表并创建导入用的临时表
+     * 覆盖/新建模式按上传的列建临时表，替换模式复制目标表结构（CREATE TABLE ... LIKE，不含触发器、授权及指向该表的外键）
      *
      * @param fields
      * @param sourceDataUpload
-     * @param source
+     * @param sqlUtils
+     * @param stagingTable
      * @throws ServerException
      */
-    private void createTable(Set<QueryColumn> fields, SourceDataUpload sourceDataUpload, Source source)
+    private void createStagingTable(Set<QueryColumn> fields, SourceDataUpload sourceDataUpload, SqlUtils sqlUtils, String stagingTable)
             throws ServerException {
 
         if (CollectionUtils.isEmpty(fields)) {
             throw new ServerException("There is have not any fields");
         }
 
-        SqlUtils sqlUtils = this.sqlUtils.init(source);
-
-        STGroup stg = new STGroupFile(Constants.SQL_TEMPLATE);
-
-        String sql = null;
+        String tableName = sourceDataUpload.getTableName();
+        short mode = sourceDataUpload.getMode();
+        boolean tableIsExist = sqlUtils.tableIsExist(tableName);
 
-        if (sourceDataUpload.getMode() == UploadModeEnum.COVER.getMode()) {
-            ST st = stg.getInstanceOf("createTable");
-            st.add("tableName", sourceDataUpload.getTableName());
+        String sql;
+        if (mode == UploadModeEnum.COVER.getMode() || mode == UploadModeEnum.NEW.getMode()) {
+            if (mode == UploadModeEnum.NEW.getMode() && tableIsExist) {
+                throw new ServerException("Table " + tableName + " is already exist");
+            }
+            ST st = sqlTemplateUtils.getInstanceOf("createTable");
+            st.add("tableName", stagingTable);
             st.add("fields", fields);
-            st.add("primaryKeys", StringUtils.isEmpty(sourceDataUpload.getPrimaryKeys()) ? null
-                    : sourceDataUpload.getPrimaryKeys().split(","));
+            if (mode == UploadModeEnum.COVER.getMode()) {
+                st.add("primaryKeys", StringUtils.isEmpty(sourceDataUpload.getPrimaryKeys()) ? null
+                        : sourceDataUpload.getPrimaryKeys().split(","));
+            } else {
+                st.add("primaryKeys", sourceDataUpload.getPrimaryKeys());
+            }
             st.add("indexKeys", sourceDataUpload.getIndexList());
             sql = st.render();
-            String dropSql = "DROP TABLE IF EXISTS `" + sourceDataUpload.getTableName() + "`";
-            sqlUtils.jdbcTemplate().execute(dropSql);
-            log.info("Drop table sql:{}", dropSql);
         } else {
-            boolean tableIsExist = sqlUtils.tableIsExist(sourceDataUpload.getTableName());
-            if (sourceDataUpload.getMode() == UploadModeEnum.NEW.getMode()) {
-                if (!tableIsExist) {
-                    ST st = stg.getInstanceOf("createTable");
-                    st.add("tableName", sourceDataUpload.getTableName());
-                    st.add("fields", fields);
-                    st.add("primaryKeys", sourceDataUpload.getPrimaryKeys());
-                    st.add("indexKeys", sourceDataUpload.getIndexList());
-
-                    sql = st.render();
-                } else {
-                    throw new ServerException("Table " + sourceDataUpload.getTableName() + " is already exist");
-                }
-            } else {
-                if (!tableIsExist) {
-                    throw new ServerException("Table " + sourceDataUpload.getTableName() + " is not exist");
-                }
+            if (!tableIsExist) {
+                throw new ServerException("Table " + tableName + " is not exist");
             }
+            sql = "CREATE TABLE `" + stagingTable + "` LIKE `" + tableName + "`";
         }
 
-        log.info("Create table sql:{}", sql);
+        log.info("Create staging table sql:{}", sql);
         try {
-            if (!StringUtils.isEmpty(sql)) {
-                sqlUtils.jdbcTemplate().execute(sql);
-            }
+            sqlUtils.jdbcTemplate().execute(sql);
         } catch (Exception e) {
             throw new ServerException(e.getMessage());
         }
     }
 
     /**
-     * 插入数据
+     * 全部数据写入临时表后再替换目标表，导入失败时目标表不受影响
      *
-     * @param headers
-     * @param values
      * @param sourceDataUpload
-     * @param source
+     * @param sqlUtils
+     * @param stagingTable
+     * @throws ServerException
      */
-    private void insertData(Set<QueryColumn> headers, List<Map<String, Object>> values,
-                            SourceDataUpload sourceDataUpload, Source source) throws ServerException {
+    private void publishStagingTable(SourceDataUpload sourceDataUpload, SqlUtils sqlUtils, String stagingTable)
+            throws ServerException {
 
-        if (CollectionUtils.isEmpty(values)) {
-            return;
-        }
+        String tableName = sourceDataUpload.getTableName();
+        short mode = sourceDataUpload.getMode();
 
-        SqlUtils sqlUtils = this.sqlUtils.init(source);
+        String oldTable = null;
+        String sql;
+        if (mode != UploadModeEnum.NEW.getMode() && sqlUtils.tableIsExist(tableName)) {
+            // RENAME TABLE 多表改名是原子操作
+            oldTable = stagingTable + "_old";
+            sql = "RENAME TABLE `" + tableName + "` TO `" + oldTable + "`, `" + stagingTable + "` TO `" + tableName + "`";
+        } else {
+            sql = "RENAME TABLE `" + stagingTable + "` TO `" + tableName + "`";
+        }
 
+        log.info("Publish upload sql:{}", sql);
         try {
-            if (sourceDataUpload.getMode() == UploadModeEnum.COVER.getMode() || sourceDataUpload.getMode() == UploadModeEnum.REPLACE.getMode()) {
-                // 清空表
-                sqlUtils.jdbcTemplate().execute("Truncate table `" + sourceDataUpload.getTableName() + "`");
-                // 插入数据
-                executeInsert(sourceDataUpload.getTableName(), headers, values, sqlUtils);
+            sqlUtils.jdbcTemplate().execute(sql);
+        } catch (Exception e) {
+            throw new ServerException(e.getMessage());
+        }
+
+        if (null != oldTable) {
+            // 新数据已生效，旧表删除失败只记录，不影响导入结果
+            try {
+                sqlUtils.jdbcTemplate().execute("DROP TABLE `" + oldTable + "`");
+            } catch (Exception e) {
+                log.warn("Drop old table {} after upload error: {}", oldTable, e.getMessage());
+            }
+        }
+    }
+
+    private static String getStagingTableName(String tableName) {
+        String suffix = "_tmp" + Long.toString(System.currentTimeMillis(), 36);
+        // mysql 表名最长 64，发布时还需追加 _old
+        if (tableName.length() + suffix.length() > 60) {
+            tableName = tableName.substring(0, 60 - suffix.length());
+        }
+        return tableName + suffix;
+    }
+
+    /**
+     * 上传数据写入：解析出表头后建临时表并开始写入，文件全部写入成功后再替换目标表，
+     * 中途解析或写入失败时删除临时表，目标表保持原样；
+     * 追加模式直接分批写入目标表，避免整表 INSERT ... SELECT 的大事务，失败前已提交的批次会保留
+     * csv 在开启 source.upload.load-data-local 且数据库允许时通过 LOAD DATA LOCAL INFILE 导入，否则批量插入
+     */
+    private class DataUploadInserter implements DataUploadHandler, Closeable {
+
+        private final SourceDataUpload sourceDataUpload;
+
+        private final Source source;
+
+        private final boolean loadDataLocal;
+
+        private Set<QueryColumn> headers;
+
+        private SqlUtils sqlUtils;
+
+        private String stagingTable;
+
+        private String insertTable;
+
+        private boolean published = false;
+
+        private BatchInsertPipeline pipeline;
+
+        private LocalInfileLoader loader;
+
+        private long startTime;
+
+        DataUploadInserter(SourceDataUpload sourceDataUpload, Source source, boolean loadDataLocal) {
+            this.sourceDataUpload = sourceDataUpload;
+            this.source = source;
+            this.loadDataLocal = loadDataLocal;
+        }
+
+        @Override
+        public void onHeaders(Set<QueryColumn> headers) throws ServerException {
+            if (CollectionUtils.isEmpty(headers)) {
+                return;
+            }
+            sqlUtils = SourceServiceImpl.this.sqlUtils.init(source);
+            String tableName = sourceDataUpload.getTableName();
+            if (sourceDataUpload.getMode() == UploadModeEnum.APPEND.getMode()) {
+                if (!sqlUtils.tableIsExist(tableName)) {
+                    throw new ServerException("Table " + tableName + " is not exist");
+                }
+                this.insertTable = tableName;
             } else {
-                boolean tableIsExist = sqlUtils.tableIsExist(sourceDataUpload.getTableName());
-                if (tableIsExist) {
-                    executeInsert(sourceDataUpload.getTableName(), headers, values, sqlUtils);
+                String staging = getStagingTableName(tableName);
+                createStagingTable(headers, sourceDataUpload, sqlUtils, staging);
+                this.stagingTable = staging;
+                this.insertTable = staging;
+            }
+            this.headers = headers;
+        }
+
+        @Override
+        public void onRow(Map<String, Object> row) throws ServerException {
+            if (null == headers) {
+                return;
+            }
+            if (null == pipeline && null == loader) {
+                startTime = System.currentTimeMillis();
+                log.info("Execute insert start ---- {}", DateUtils.toyyyyMMddHHmmss(startTime));
+                if (loadDataLocal && isLocalInfileEnabled(sqlUtils)) {
+                    loader = openLocalInfileLoader(headers, sourceDataUpload, insertTable, source, sqlUtils);
                 } else {
-                    throw new ServerException("Table " + sourceDataUpload.getTableName() + " is not exist");
+                    pipeline = openInsertPipeline(headers, sourceDataUpload, insertTable, source, sqlUtils);
                 }
             }
-        } catch (ServerException e) {
-            throw new ServerException(e.getMessage());
+            if (null != loader) {
+                loader.add(row);
+            } else {
+                pipeline.add(row);
+            }
+        }
+
+        void finish() throws ServerException {
+            if (null == headers) {
+                return;
+            }
+            long rows = 0L;
+            if (null != loader) {
+                rows = loader.finish();
+            } else if (null != pipeline) {
+                rows = pipeline.finish();
+            }
+            if (null != stagingTable) {
+                publishStagingTable(sourceDataUpload, sqlUtils, stagingTable);
+            }
+            published = true;
+            long endTime = System.currentTimeMillis();
+            log.info("Execute insert end ---- {}", DateUtils.toyyyyMMddHHmmss(endTime));
+            log.info("Inserted {} rows, execution time {} second", rows, (endTime - startTime) / 1000);
         }
 
+        @Override
+        public void close() {
+            if (null != loader) {
+                loader.close();
+            }
+            if (null != pipeline) {
+                pipeline.close();
+            }
+            if (null != stagingTable && !published) {
+                try {
+                    sqlUtils.jdbcTemplate().execute("DROP TABLE IF EXISTS `" + stagingTable + "`");
+                } catch (Exception e) {
+                    log.warn("Drop staging table {} error: {}", stagingTable, e.getMessage());
+                }
+            }
+        }
     }
 
     /**
-     * 多线程执行插入数据
+     * 创建批量插入管道
      *
-     * @param tableName
      * @param headers
-     * @param values
+     * @param sourceDataUpload
+     * @param tableName        写入的表（临时表，追加模式为目标表）
+     * @param source
      * @param sqlUtils
-     * @throws ServerException
+     * @return
      */
-    private void executeInsert(String tableName, Set<QueryColumn> headers, List<Map<String, Object>> values,
-                               SqlUtils sqlUtils) throws ServerException {
-
-        if (!CollectionUtils.isEmpty(values)) {
-            int len = 1000;
-            int totalSize = values.size();
-            int pageSize = len;
-            int totalPage = totalSize / pageSize;
-            if (totalSize % pageSize != 0) {
-                totalPage += 1;
-                if (totalSize < pageSize) {
-                    pageSize = values.size();
-                }
-            }
+    private BatchInsertPipeline openInsertPipeline(Set<QueryColumn> headers, SourceDataUpload sourceDataUpload,
+                                                   String tableName, Source source, SqlUtils sqlUtils) {
 
-            ExecutorService executorService = Executors.newFixedThreadPool(Math.min(totalPage, 8));
-
-            STGroup stg = new STGroupFile(Constants.SQL_TEMPLATE);
-            ST st = stg.getInstanceOf("insertData");
-            st.add("tableName", tableName);
-            st.add("columns", headers);
-            String sql = st.render();
-            log.info("Insert sql:{}", st.render());
-            List<Future> futures = new ArrayList<>();
-
-            // 分页批量插入
-            long startTime = System.currentTimeMillis();
-            log.info("Execute insert start ---- {}", DateUtils.toyyyyMMddHHmmss(startTime));
-            for (int pageNum = 1; pageNum < totalPage + 1; pageNum++) {
-                int localPageNum = pageNum;
-                int localPageSize = pageSize;
-                futures.add(executorService.submit(() -> {
-                    int starNum = (localPageNum - 1) * localPageSize;
-                    int endNum = Math.min(localPageNum * localPageSize, totalSize);
-                    log.info("ExecuteInsert thread-{} : start:{}, end:{}", localPageNum, starNum, endNum);
-                    sqlUtils.executeBatch(sql, headers, values.subList(starNum, endNum));
-                }));
-            }
+        ST st = sqlTemplateUtils.getInstanceOf("insertData");
+        st.add("tableName", tableName);
+        st.add("columns", headers);
+        String sql = st.render();
+        log.info("Insert sql:{}", sql);
 
-            try {
-                for (Future future : futures) {
-                    future.get();
-                }
-                long endTime = System.currentTimeMillis();
-                log.info("Execute insert end ---- {}", DateUtils.toyyyyMMddHHmmss(endTime));
-                log.info("Execution time {} second", (endTime - startTime) / 1000);
-            } catch (InterruptedException | ExecutionException e) {
-                throw new ServerException(e.getMessage());
-            } finally {
-                executorService.shutdown();
+        return bulkLoadScheduler.open(String.valueOf(source.getId()),
+                source.getId() + AT_SYMBOL + sourceDataUpload.getTableName(), sqlUtils, sql, headers);
+    }
+
+    /**
+     * 创建 LOAD DATA LOCAL INFILE 导入任务
+     *
+     * @param headers
+     * @param sourceDataUpload
+     * @param tableName        写入的表（临时表，追加模式为目标表）
+     * @param source
+     * @param sqlUtils
+     * @return
+     */
+    private LocalInfileLoader openLocalInfileLoader(Set<QueryColumn> headers, SourceDataUpload sourceDataUpload,
+                                                    String tableName, Source source, SqlUtils sqlUtils) {
+
+        ST st = sqlTemplateUtils.getInstanceOf("loadData");
+        st.add("tableName", tableName);
+        st.add("columns", headers);
+        String sql = st.render();
+        log.info("Load data sql:{}", sql);
+
+        return bulkLoadScheduler.openLocalInfile(String.valueOf(source.getId()),
+                source.getId() + AT_SYMBOL + sourceDataUpload.getTableName(), sqlUtils, sql, headers);
+    }
+
+    /**
+     * 数据库是否允许 LOAD DATA LOCAL INFILE，不允许时退回批量插入
+     *
+     * @param sqlUtils
+     * @return
+     */
+    private boolean isLocalInfileEnabled(SqlUtils sqlUtils) {
+        try {
+            String localInfile = sqlUtils.jdbcTemplate().queryForObject("SELECT @@GLOBAL.local_infile", String.class);
+            if ("1".equals(localInfile) || "ON".equalsIgnoreCase(localInfile)) {
+                return true;
             }
+            log.info("local_infile is disabled on {}, fall back to batch insert", sqlUtils.getJdbcUrl());
+        } catch (Exception e) {
+            log.warn("Check local_infile failed, fall back to batch insert: {}", e.getMessage());
         }
+        return false;
     }
 
 }
@@ -23,6 +23,7 @@ import com.alibaba.druid.util.StringUtils;
 import edp.core.utils.TokenUtils;
 import edp.davinci.core.common.Constants;
 import edp.davinci.core.common.ResultMap;
+import edp.davinci.core.service.ProjectPermissionCache;
 import edp.davinci.dao.ProjectMapper;
 import edp.davinci.dao.StarMapper;
 import edp.davinci.dto.projectDto.ProjectWithCreateBy;
@@ -50,6 +51,9 @@ public class StarServiceImpl implements StarService {
     @Autowired
     private StarMapper starMapper;
 
+    @Autowired
+    private ProjectPermissionCache projectPermissionCache;
+
     @Override
     @Transactional
     public ResultMap starAndUnstar(String target, Long targetId, User user, HttpServletRequest request) {
@@ -72,6 +76,7 @@ public class StarServiceImpl implements StarService {
                         synchronized (id) {
                             projectMapper.starNumAdd(project.getId());
                         }
+                        projectPermissionCache.evictProject(project.getId());
                         return resultMap.successAndRefreshToken(request);
                     }
                 } else {
@@ -81,6 +86,7 @@ public class StarServiceImpl implements StarService {
                         synchronized (id) {
                             projectMapper.starNumReduce(project.getId());
                         }
+                        projectPermissionCache.evictProject(project.getId());
                     }
                     return resultMap.successAndRefreshToken(request);
                 }
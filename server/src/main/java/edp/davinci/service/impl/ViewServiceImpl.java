@@ -23,17 +23,21 @@ import com.alibaba.druid.util.StringUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import edp.core.common.cache.ResultCache;
+import edp.core.common.jdbc.QueryCancelRegistry;
+import edp.core.common.jdbc.ResultStreamHandler;
 import edp.core.exception.NotFoundException;
 import edp.core.exception.ServerException;
 import edp.core.exception.UnAuthorizedException;
 import edp.core.model.Paginate;
 import edp.core.model.PaginateWithQueryColumns;
 import edp.core.utils.*;
-import edp.davinci.core.common.Constants;
+import edp.davinci.core.common.SourceQueryScheduler;
 import edp.davinci.core.enums.*;
 import edp.davinci.core.model.SqlEntity;
 import edp.davinci.core.model.SqlFilter;
 import edp.davinci.core.utils.SqlParseUtils;
+import edp.davinci.core.utils.SqlTemplateUtils;
 import edp.davinci.dao.RelRoleViewMapper;
 import edp.davinci.dao.SourceMapper;
 import edp.davinci.dao.ViewMapper;
@@ -54,8 +58,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.stringtemplate.v4.ST;
-import org.stringtemplate.v4.STGroup;
-import org.stringtemplate.v4.STGroupFile;
 
 import java.sql.SQLException;
 import java.util.*;
@@ -91,7 +93,10 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
     private SqlUtils sqlUtils;
 
     @Autowired
-    private RedisUtils redisUtils;
+    private ResultCache resultCache;
+
+    @Autowired
+    private SourceQueryScheduler sourceQueryScheduler;
 
     @Autowired
     private ProjectService projectService;
@@ -99,6 +104,9 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
     @Autowired
     private SqlParseUtils sqlParseUtils;
 
+    @Autowired
+    private SqlTemplateUtils sqlTemplateUtils;
+
     private static final String SQL_VARABLE_KEY = "name";
 
     private static final CheckEntityEnum entity = CheckEntityEnum.VIEW;
@@ -451,11 +459,15 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
             }
 
             if (!CollectionUtils.isEmpty(querySqlList)) {
-                for (String sql : querySqlList) {
-                    sql = SqlParseUtils.rebuildSqlWithFragment(sql);
-                    paginateWithQueryColumns = sqlUtils.syncQuery4Paginate(sql, null, null, null, executeSql.getLimit(),
-                            null);
-                }
+                paginateWithQueryColumns = sourceQueryScheduler.execute(source, QueryLaneEnum.INTERACTIVE, () -> {
+                    PaginateWithQueryColumns result = null;
+                    for (String sql : querySqlList) {
+                        sql = SqlParseUtils.rebuildSqlWithFragment(sql);
+                        result = sqlUtils.syncQuery4Paginate(sql, null, null, null, executeSql.getLimit(),
+                                null);
+                    }
+                    return result;
+                });
             }
 
         } catch (Exception e) {
@@ -493,6 +505,76 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
         return getResultDataList(projectService.isMaintainer(projectDetail, user), viewWithSource, executeParam, user);
     }
 
+    /**
+     * 流式返回view源数据集，不分页时结果逐行写出，不在内存中累积
+     *
+     * @param id
+     * @param executeParam
+     * @param user
+     * @param handler
+     */
+    @Override
+    public void getDataByStream(Long id, ViewExecuteParam executeParam, User user, ResultStreamHandler handler) throws NotFoundException, UnAuthorizedException, ServerException {
+
+        if (null == executeParam || (CollectionUtils.isEmpty(executeParam.getGroups()) && CollectionUtils.isEmpty(executeParam.getAggregators()))) {
+            return;
+        }
+
+        ViewWithSource viewWithSource = getViewWithSource(id);
+        ProjectDetail projectDetail = projectService.getProjectDetail(viewWithSource.getProjectId(), user, false);
+        if (!projectService.allowGetData(projectDetail, user)) {
+            throw new UnAuthorizedException("You have not permission to get data");
+        }
+
+        if (null == viewWithSource.getSource()) {
+            throw new NotFoundException("Source is not found");
+        }
+
+        if (StringUtils.isEmpty(viewWithSource.getSql())) {
+            return;
+        }
+
+        boolean isMaintainer = projectService.isMaintainer(projectDetail, user);
+
+        try {
+            // 分页结果有界，沿用普通查询
+            if (executeParam.getPageNo() > 0 || executeParam.getPageSize() > 0) {
+                PaginateWithQueryColumns paginate = getResultDataList(isMaintainer, viewWithSource, executeParam, user);
+                if (null != paginate) {
+                    handler.onColumns(paginate.getColumns());
+                    for (Map<String, Object> row : paginate.getResultList()) {
+                        handler.onRow(row);
+                    }
+                    handler.onComplete(paginate.getPageNo(), paginate.getPageSize(), paginate.getTotalCount(), paginate.isCountApproximate());
+                }
+                return;
+            }
+
+            SQLContext sqlContext = getSQLContext(isMaintainer, viewWithSource, executeParam, user);
+            if (null == sqlContext || CollectionUtils.isEmpty(sqlContext.getQuerySql())) {
+                return;
+            }
+
+            SqlUtils sqlUtils = this.sqlUtils.init(viewWithSource.getSource());
+            Set<String> excludeColumns = CollectionUtils.isEmpty(sqlContext.getExcludeColumns()) ? null : new HashSet<>(sqlContext.getExcludeColumns());
+            List<String> querySqlList = sqlContext.getQuerySql();
+            // 名额在结果全部写给客户端后才释放，使用 stream 通道，不占用看板交互查询的名额
+            sourceQueryScheduler.execute(viewWithSource.getSource(), QueryLaneEnum.STREAM, () -> {
+                if (!CollectionUtils.isEmpty(sqlContext.getExecuteSql())) {
+                    sqlContext.getExecuteSql().forEach(sqlUtils::execute);
+                }
+                return sqlUtils.query4Stream(SqlParseUtils.rebuildSqlWithFragment(querySqlList.get(querySqlList.size() - 1)),
+                        executeParam.getLimit(), excludeColumns, handler);
+            });
+
+        } catch (ServerException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error(e.toString(), e);
+            throw new ServerException(e.getMessage());
+        }
+    }
+
     private ViewWithSource getViewWithSource(Long id) {
         ViewWithSource viewWithSource = viewMapper.getViewWithSource(id);
         if (null == viewWithSource) {
@@ -508,8 +590,7 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
         }
 
         // 构造参数， 原有的被传入的替换
-        STGroup stg = new STGroupFile(Constants.SQL_TEMPLATE);
-        ST st = stg.getInstanceOf("querySql");
+        ST st = sqlTemplateUtils.getInstanceOf("querySql");
         st.add("nativeQuery", executeParam.isNativeQuery());
         st.add("groups", executeParam.getGroups());
 
@@ -519,7 +600,15 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
             st.add("aggregators", executeParam.getAggregators(source.getJdbcUrl(), source.getDbVersion()));
         }
         st.add("orders", executeParam.getOrders(source.getJdbcUrl(), source.getDbVersion()));
-        st.add("filters", convertFilters(executeParam.getFilters(), source));
+
+        List<String> filters = convertFilters(executeParam.getFilters(), source);
+        if (executeParam.isKeysetPaging(source.getJdbcUrl())) {
+            if (null == filters) {
+                filters = new ArrayList<>();
+            }
+            filters.add(executeParam.buildKeysetFilter(source.getJdbcUrl()));
+        }
+        st.add("filters", filters);
         st.add("keywordPrefix", sqlUtils.getKeywordPrefix(source.getJdbcUrl(), source.getDbVersion()));
         st.add("keywordSuffix", sqlUtils.getKeywordSuffix(source.getJdbcUrl(), source.getDbVersion()));
 
@@ -581,7 +670,6 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
             throw new NotFoundException("Source is not found");
         }
 
-        String cacheKey = null;
         try {
 
             if (StringUtils.isEmpty(viewWithSource.getSql())) {
@@ -611,6 +699,17 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
                 buildQuerySql(querySqlList, source, executeParam);
                 executeParam.addExcludeColumn(excludeColumns, source.getJdbcUrl(), source.getDbVersion());
 
+                // 只有实际访问数据源时才占用查询名额，命中缓存不受影响
+                Callable<PaginateWithQueryColumns> loader = () -> sourceQueryScheduler.execute(source, QueryLaneEnum.INTERACTIVE, () -> {
+                    PaginateWithQueryColumns result = null;
+                    for (String sql : querySqlList) {
+                        result = sqlUtils.syncQuery4Paginate(SqlParseUtils.rebuildSqlWithFragment(sql),
+                                executeParam.getPageNo(), executeParam.getPageSize(), executeParam.getTotalCount(),
+                                executeParam.getLimit(), excludeColumns, executeParam.isKeysetPaging(source.getJdbcUrl()));
+                    }
+                    return result;
+                });
+
                 if (null != executeParam.getCache() && executeParam.getCache() && executeParam.getExpired() > 0L) {
 
                     StringBuilder saltBuilder = new StringBuilder();
@@ -620,26 +719,13 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
                     saltBuilder.append(MINUS);
                     saltBuilder.append(executeParam.getPageSize());
                     excludeColumns.forEach(saltBuilder::append);
-                    cacheKey = MD5Util.getMD5(saltBuilder.toString() + querySqlList.get(querySqlList.size() - 1), true,
+                    String cacheKey = MD5Util.getMD5(saltBuilder.toString() + querySqlList.get(querySqlList.size() - 1), true,
                             32);
-                    if (!executeParam.getFlush()) {
 
-                        try {
-                            Object object = redisUtils.get(cacheKey);
-                            if (null != object && executeParam.getCache()) {
-                                paginate = (PaginateWithQueryColumns) object;
-                                return paginate;
-                            }
-                        } catch (Exception e) {
-                            log.warn("Get data by cache error, {}", e.getMessage());
-                        }
-                    }
-                }
-
-                for (String sql : querySqlList) {
-                    paginate = sqlUtils.syncQuery4Paginate(SqlParseUtils.rebuildSqlWithFragment(sql),
-                            executeParam.getPageNo(), executeParam.getPageSize(), executeParam.getTotalCount(),
-                            executeParam.getLimit(), excludeColumns);
+                    paginate = resultCache.get(cacheKey, executeParam.getExpired(), Boolean.TRUE.equals(executeParam.getFlush()),
+                            loader, p -> !CollectionUtils.isEmpty(p.getResultList()) && !p.isCountApproximate());
+                } else {
+                    paginate = loader.call();
                 }
             }
 
@@ -648,11 +734,6 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
             throw new ServerException(e.getMessage());
         }
 
-        if (null != executeParam.getCache() && executeParam.getCache() && executeParam.getExpired() > 0L
-                && null != paginate && !CollectionUtils.isEmpty(paginate.getResultList())) {
-            redisUtils.set(cacheKey, paginate, executeParam.getExpired(), TimeUnit.SECONDS);
-        }
-
         return paginate;
     }
 
@@ -698,8 +779,7 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
             if (!CollectionUtils.isEmpty(querySqlList)) {
                 String cacheKey = null;
                 if (null != param) {
-                    STGroup stg = new STGroupFile(Constants.SQL_TEMPLATE);
-                    ST st = stg.getInstanceOf("queryDistinctSql");
+                    ST st = sqlTemplateUtils.getInstanceOf("queryDistinctSql");
                     st.add("columns", param.getColumns());
                     st.add("filters", convertFilters(param.getFilters(), source));
                     st.add("sql", querySqlList.get(querySqlList.size() - 1));
@@ -711,24 +791,22 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
 
                     if (null != param.getCache() && param.getCache() && param.getExpired().longValue() > 0L) {
                         cacheKey = MD5Util.getMD5(sql, true, 32);
-
-                        try {
-                            Object object = redisUtils.get(cacheKey);
-                            if (null != object) {
-                                return (List) object;
-                            }
-                        } catch (Exception e) {
-                            log.warn("Get distinct value by cache error, {}", e.getMessage());
-                        }
                     }
                 }
-                List<Map<String, Object>> list = null;
-                for (String sql : querySqlList) {
-                    list = sqlUtils.query4List(SqlParseUtils.rebuildSqlWithFragment(sql), -1);
-                }
 
-                if (null != param.getCache() && param.getCache() && param.getExpired().longValue() > 0L) {
-                    redisUtils.set(cacheKey, list, param.getExpired(), TimeUnit.SECONDS);
+                Callable<List<Map<String, Object>>> loader = () -> sourceQueryScheduler.execute(source, QueryLaneEnum.CONTROL, () -> {
+                    List<Map<String, Object>> result = null;
+                    for (String sql : querySqlList) {
+                        result = sqlUtils.query4List(SqlParseUtils.rebuildSqlWithFragment(sql), -1);
+                    }
+                    return result;
+                });
+
+                List<Map<String, Object>> list = null;
+                if (null != cacheKey) {
+                    list = resultCache.get(cacheKey, param.getExpired(), false, loader, Objects::nonNull);
+                } else {
+                    list = loader.call();
                 }
 
                 if (null != list) {
@@ -744,6 +822,18 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
         return null;
     }
 
+    /**
+     * 取消当前用户发起的查询
+     *
+     * @param requestId
+     * @param user
+     * @return
+     */
+    @Override
+    public boolean cancelQuery(String requestId, User user) {
+        return QueryCancelRegistry.cancel(requestId, null == user ? null : String.valueOf(user.getId()));
+    }
+
     public void packageParams(boolean isProjectMaintainer, Long viewId, SqlEntity sqlEntity, List<SqlVariable> variables, List<Param> paramList, Set<String> excludeColumns, User user) {
 
         List<SqlVariable> queryVariables = getQueryVariables(variables);
@@ -793,42 +883,18 @@ ViewServiceImpl extends BaseEntityService implements ViewService {
 
         //权限参数
         if (!CollectionUtils.isEmpty(authVariables)) {
-            ExecutorService executorService = Executors.newFixedThreadPool(authVariables.size() > 8 ? 8 : authVariables.size());
-            Map<String, Set<String>> map = new Hashtable<>();
-            List<Future> futures = new ArrayList<>(authVariables.size());
-            try {
-                authVariables.forEach(sqlVariable -> {
-                    futures.add(executorService.submit(() -> {
-                        if (null != sqlVariable) {
-                            Set<String> vSet = null;
-                            if (map.containsKey(sqlVariable.getName().trim())) {
-                                vSet = map.get(sqlVariable.getName().trim());
-                            } else {
-                                vSet = new HashSet<>();
-                            }
-
-                            List<String> values = sqlParseUtils.getAuthVarValue(sqlVariable, user.getEmail());
-                            if (null == values) {
-                                vSet.add(NO_AUTH_PERMISSION);
-                            } else if (!values.isEmpty()) {
-                                vSet.addAll(values);
-                            }
-                            map.put(sqlVariable.getName().trim(), vSet);
-                        }
-                    }));
-                });
-                try {
-                    for (Future future : futures) {
-                        future.get();
-                    }
-                } catch (ExecutionException e) {
-                    executorService.shutdownNow();
-                    throw new ServerException(e.getMessage());
+            List<SqlVariable> variableList = authVariables.stream().filter(Objects::nonNull).collect(Collectors.toList());
+            List<List<String>> results = sqlParseUtils.getAuthVarValues(variableList, user.getEmail());
+
+            Map<String, Set<String>> map = new HashMap<>();
+            for (int i = 0; i < variableList.size(); i++) {
+                Set<String> vSet = map.computeIfAbsent(variableList.get(i).getName().trim(), k -> new HashSet<>());
+                List<String> values = results.get(i);
+                if (null == values) {
+                    vSet.add(NO_AUTH_PERMISSION);
+                } else if (!values.isEmpty()) {
+                    vSet.addAll(values);
                 }
-            } catch (InterruptedException e) {
-                log.error(e.toString(), e);
-            } finally {
-                executorService.shutdown();
             }
 
             if (!CollectionUtils.isEmpty(map)) {
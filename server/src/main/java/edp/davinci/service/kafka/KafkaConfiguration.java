@@ -15,7 +15,7 @@ import javax.annotation.PostConstruct;
 @Slf4j
 public class KafkaConfiguration {
 
-    protected Producer<String, String> producer;
+    protected volatile Producer<String, String> producer;
 
     private String servers;
 
@@ -46,7 +46,7 @@ public class KafkaConfiguration {
         initProducer();
     }
 
-    public void initProducer(){
+    public synchronized void initProducer(){
         if(producer != null){
             this.producer.flush();
             this.producer.close();
@@ -54,8 +54,25 @@ public class KafkaConfiguration {
 
         KafkaProperties producerProps = KafkaProperties.initProducer();
         producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, servers);
+        for (String key : KafkaProperties.PRODUCER_TUNING_KEYS) {
+            String value = environment.getProperty("statistic.kafka.producer." + key);
+            if (StringUtils.isNotBlank(value)) {
+                producerProps.put(key, value.trim());
+            }
+        }
 
         producer = new KafkaProducer<>(producerProps.getProperties());
     }
 
+    /**
+     * 仅当生产者仍是 expected 时重建，并发发送同时失败时只重建一次，不会关闭刚重建的生产者
+     *
+     * @param expected
+     */
+    public synchronized void initProducer(Producer<String, String> expected){
+        if(producer == expected){
+            initProducer();
+        }
+    }
+
 }
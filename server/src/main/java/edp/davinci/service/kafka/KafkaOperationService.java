@@ -1,42 +1,130 @@
 package edp.davinci.service.kafka;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Component
 @Slf4j
 public class KafkaOperationService extends KafkaConfiguration {
 
+    private static final ScheduledExecutorService RETRY_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("kafka-send-retry-%d").setDaemon(true).build());
+
+    @Value("${statistic.kafka.send-retries:2}")
+    private int sendRetries;
+
+    @Value("${statistic.kafka.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    private final AtomicLong sent = new AtomicLong(0);
+
+    private final AtomicLong failed = new AtomicLong(0);
+
+    private final AtomicLong retried = new AtomicLong(0);
+
+    private final AtomicLong latencyTotalMillis = new AtomicLong(0);
+
+    private final AtomicLong latencyMaxMillis = new AtomicLong(0);
+
     public void send(String topic, String msg) {
+        send(topic, null, msg);
+    }
+
+    /**
+     * 异步发送，key 用于分区，发送结果在回调中处理，可重试的失败按退避有限次重发
+     *
+     * @param topic
+     * @param key
+     * @param msg
+     */
+    public void send(String topic, String key, String msg) {
+        doSend(new ProducerRecord<>(topic, key, msg), 0);
+    }
+
+    /**
+     * 发送统计：已确认条数、失败条数、重试次数及确认耗时
+     *
+     * @return
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        long count = sent.get();
+        stats.put("sent", count);
+        stats.put("failed", failed.get());
+        stats.put("retried", retried.get());
+        stats.put("avgLatencyMs", count == 0 ? 0 : latencyTotalMillis.get() / count);
+        stats.put("maxLatencyMs", latencyMaxMillis.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        RETRY_EXECUTOR.shutdown();
+        Producer<String, String> current = this.producer;
+        if (current != null) {
+            current.flush();
+            current.close();
+        }
+    }
+
+    private void doSend(ProducerRecord<String, String> record, int attempt) {
+        Producer<String, String> current = this.producer;
+        if (current == null) {
+            onFailure(record, attempt, new RuntimeException("Producer of kafka is null ."), false);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
         try {
-            doSend(topic, msg);
-
-        }catch (Exception e){
-            log.error("Send msg to kafka error . topic={}, msg={}", topic, msg, e);
-            super.initProducer();
-
-            //重试
-            for(int i=1; i<=2; i++){
-                log.info("Send msg to kafka retry {} time . topic={}, msg={}", i, topic, msg);
-                try {
-                    doSend(topic, msg);
-                    break;
-                }catch (Exception ex){
-                    log.error("Send msg to kafka retry {} time . topic={}, msg={}", i, topic, msg, ex);
-                }finally {
-                    super.initProducer();
+            current.send(record, (metadata, exception) -> {
+                if (exception == null) {
+                    recordLatency(System.currentTimeMillis() - start);
+                    sent.incrementAndGet();
+                } else {
+                    onFailure(record, attempt, exception, exception instanceof RetriableException);
                 }
-            }
+            });
+        } catch (IllegalStateException e) {
+            // 生产者已被关闭，重建后按失败重试
+            log.error("Kafka producer is closed, rebuild it. topic={}", record.topic(), e);
+            initProducer(current);
+            onFailure(record, attempt, e, true);
+        } catch (Exception e) {
+            onFailure(record, attempt, e, e instanceof RetriableException);
         }
     }
 
-    private void doSend(String topic, String msg){
-        if(this.producer == null){
-            throw new RuntimeException("Producer of kafka is null .");
-        }else{
-            this.producer.send(new ProducerRecord<>(topic, msg));
+    private void onFailure(ProducerRecord<String, String> record, int attempt, Exception e, boolean retriable) {
+        if (retriable && attempt < sendRetries && !RETRY_EXECUTOR.isShutdown()) {
+            retried.incrementAndGet();
+            log.warn("Send msg to kafka retry {} time . topic={}, error={}", attempt + 1, record.topic(), e.getMessage());
+            RETRY_EXECUTOR.schedule(() -> doSend(record, attempt + 1), retryBackoffMillis * (attempt + 1), TimeUnit.MILLISECONDS);
+            return;
         }
+        long count = failed.incrementAndGet();
+        log.error("Send msg to kafka error . topic={}, attempts={}, failed={}, msg={}", record.topic(), attempt + 1, count, record.value(), e);
     }
 
+    private void recordLatency(long latency) {
+        latencyTotalMillis.addAndGet(latency);
+        long max;
+        while (latency > (max = latencyMaxMillis.get())) {
+            if (latencyMaxMillis.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
 }
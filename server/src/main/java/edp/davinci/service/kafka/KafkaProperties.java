@@ -8,6 +8,9 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 @Slf4j
@@ -25,6 +28,22 @@ public class KafkaProperties extends Properties {
             "         principal=\"%2$s\";\n" +
             "};";
 
+    //可通过 statistic.kafka.producer.<key> 覆盖的生产者参数
+    public static final List<String> PRODUCER_TUNING_KEYS = Collections.unmodifiableList(Arrays.asList(
+            ProducerConfig.ACKS_CONFIG,
+            ProducerConfig.LINGER_MS_CONFIG,
+            ProducerConfig.BATCH_SIZE_CONFIG,
+            ProducerConfig.COMPRESSION_TYPE_CONFIG,
+            ProducerConfig.BUFFER_MEMORY_CONFIG,
+            ProducerConfig.MAX_BLOCK_MS_CONFIG,
+            ProducerConfig.RETRIES_CONFIG,
+            ProducerConfig.RETRY_BACKOFF_MS_CONFIG,
+            ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG,
+            ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG,
+            ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION,
+            CommonClientConfigs.SECURITY_PROTOCOL_CONFIG
+    ));
+
     public KafkaProperties(){
         properties = new Properties();
     }
@@ -63,6 +82,12 @@ public class KafkaProperties extends Properties {
                 .put(ProducerConfig.ACKS_CONFIG, "all")
                 .put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer")
                 .put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer")
+                // 埋点数据量大，攒批并压缩后再发送
+                .put(ProducerConfig.LINGER_MS_CONFIG, "20")
+                .put(ProducerConfig.BATCH_SIZE_CONFIG, "65536")
+                .put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4")
+                .put(ProducerConfig.MAX_BLOCK_MS_CONFIG, "5000")
+                .put(ProducerConfig.RETRIES_CONFIG, "3")
                 .put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, "SASL_PLAINTEXT")
                 .put("sasl.kerberos.service.name", "kafka");
     }
@@ -0,0 +1,46 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.statistic;
+
+import edp.davinci.service.elastic.ElasticOperationService;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.List;
+
+/**
+ * 写入 elasticsearch，每种实体对应一个索引
+ */
+public class ElasticStatisticSink implements StatisticSink {
+
+    private final ElasticOperationService elasticOperationService;
+
+    private final String indexPrefix;
+
+    public ElasticStatisticSink(ElasticOperationService elasticOperationService, String indexPrefix) {
+        this.elasticOperationService = elasticOperationService;
+        this.indexPrefix = indexPrefix;
+    }
+
+    @Override
+    public void write(StatisticEntity entity, List<Object> infos) {
+        String index = StringUtils.isBlank(indexPrefix) ? entity.getTableName() : indexPrefix + "_" + entity.getTableName();
+        elasticOperationService.bulkInsert(index, index, entity.toMaps(infos));
+    }
+}
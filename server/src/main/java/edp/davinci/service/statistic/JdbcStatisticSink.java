@@ -0,0 +1,95 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.statistic;
+
+import edp.core.exception.ServerException;
+import edp.core.model.QueryColumn;
+import edp.core.model.TableInfo;
+import edp.core.utils.CollectionUtils;
+import edp.core.utils.SqlUtils;
+import edp.davinci.core.utils.SqlTemplateUtils;
+import org.stringtemplate.v4.ST;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 写入 mysql，表结构及 insert 语句按实体类型缓存，只在首次写入时读取一次元数据
+ */
+public class JdbcStatisticSink implements StatisticSink {
+
+    private final SqlUtils sqlUtils;
+
+    private final SqlTemplateUtils sqlTemplateUtils;
+
+    private final String dbName;
+
+    private final Map<Class<?>, InsertPlan> plans = new ConcurrentHashMap<>();
+
+    public JdbcStatisticSink(SqlUtils sqlUtils, SqlTemplateUtils sqlTemplateUtils, String jdbcUrl) {
+        this.sqlUtils = sqlUtils;
+        this.sqlTemplateUtils = sqlTemplateUtils;
+        this.dbName = getDbName(jdbcUrl);
+    }
+
+    @Override
+    public void write(StatisticEntity entity, List<Object> infos) {
+        InsertPlan plan = plans.computeIfAbsent(entity.getType(), k -> buildPlan(entity));
+
+        List<Map<String, Object>> values = new ArrayList<>(infos.size());
+        for (Object info : infos) {
+            Map<String, Object> map = entity.toMap(info);
+            map.replaceAll((k, v) -> v instanceof List ? v.toString() : v);
+            values.add(map);
+        }
+        sqlUtils.executeBatch(plan.sql, plan.headers, values);
+    }
+
+    private InsertPlan buildPlan(StatisticEntity entity) {
+        TableInfo tableInfo = sqlUtils.getTableInfo(dbName, entity.getTableName());
+        if (tableInfo == null || CollectionUtils.isEmpty(tableInfo.getColumns())) {
+            throw new ServerException("Statistic table " + entity.getTableName() + " is not found");
+        }
+        Set<QueryColumn> headers = new HashSet<>(tableInfo.getColumns());
+
+        ST st = sqlTemplateUtils.getInstanceOf("insertData");
+        st.add("tableName", entity.getTableName());
+        st.add("columns", headers);
+        return new InsertPlan(headers, st.render());
+    }
+
+    private static String getDbName(String url) {
+        int end = url.indexOf("?");
+        String dbName = end < 0 ? url : url.substring(0, end);
+        return dbName.substring(dbName.lastIndexOf("/") + 1);
+    }
+
+    private static final class InsertPlan {
+
+        private final Set<QueryColumn> headers;
+
+        private final String sql;
+
+        private InsertPlan(Set<QueryColumn> headers, String sql) {
+            this.headers = headers;
+            this.sql = sql;
+        }
+    }
+}
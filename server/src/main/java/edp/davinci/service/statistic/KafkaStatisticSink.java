@@ -0,0 +1,52 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.statistic;
+
+import com.alibaba.fastjson.JSON;
+import edp.davinci.service.kafka.KafkaOperationService;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 写入 kafka，每条数据单独发送（消息体仍为 JSON 数组），以访问者邮箱作为 key 使数据分散到各分区且同一用户有序，
+ * 攒批与压缩交由生产者的 linger/batch/compression 配置完成
+ */
+public class KafkaStatisticSink implements StatisticSink {
+
+    private static final String KEY_FIELD = "email";
+
+    private final KafkaOperationService kafkaOperationService;
+
+    private final String topic;
+
+    public KafkaStatisticSink(KafkaOperationService kafkaOperationService, String topic) {
+        this.kafkaOperationService = kafkaOperationService;
+        this.topic = topic;
+    }
+
+    @Override
+    public void write(StatisticEntity entity, List<Object> infos) {
+        for (Object info : infos) {
+            Object key = entity.getFieldValue(info, KEY_FIELD);
+            kafkaOperationService.send(topic, key == null ? null : key.toString(), JSON.toJSONString(Collections.singletonList(info)));
+        }
+    }
+}
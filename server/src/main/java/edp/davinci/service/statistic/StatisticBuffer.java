@@ -0,0 +1,154 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.statistic;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 埋点数据的有界缓冲
+ * 请求线程只负责入队，队列满时直接丢弃；后台线程在攒够 batchSize 条或距上次写入超过 flushInterval 时，
+ * 按实体类型分组交给 StatisticSink 批量写入
+ */
+@Slf4j
+public class StatisticBuffer {
+
+    private final StatisticSink sink;
+
+    private final ArrayBlockingQueue<Object> queue;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final Thread flusher;
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final AtomicLong failed = new AtomicLong(0);
+
+    private volatile boolean running = true;
+
+    public StatisticBuffer(StatisticSink sink, int capacity, int batchSize, long flushIntervalMillis) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1L, flushIntervalMillis);
+        this.flusher = new ThreadFactoryBuilder().setNameFormat("statistic-flusher-%d").setDaemon(true).build()
+                .newThread(this::runFlusher);
+        this.flusher.start();
+    }
+
+    /**
+     * 非阻塞入队，返回实际接收的条数
+     *
+     * @param infos
+     * @return
+     */
+    public int offer(List<?> infos) {
+        int accepted = 0;
+        for (Object info : infos) {
+            if (info == null) {
+                continue;
+            }
+            if (!running || !queue.offer(info)) {
+                long count = dropped.incrementAndGet();
+                if (count == 1 || count % 10000 == 0) {
+                    log.warn("Statistic buffer is full, dropped {} infos so far", count);
+                }
+                continue;
+            }
+            accepted++;
+        }
+        return accepted;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 停止接收并写出剩余数据
+     */
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runFlusher() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        long deadline = System.currentTimeMillis() + flushIntervalMillis;
+        while (running) {
+            try {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait > 0) {
+                    Object info = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (info != null) {
+                        batch.add(info);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (batch.size() >= batchSize || System.currentTimeMillis() >= deadline) {
+                flush(batch);
+                deadline = System.currentTimeMillis() + flushIntervalMillis;
+            }
+        }
+
+        queue.drainTo(batch);
+        flush(batch);
+    }
+
+    private void flush(List<Object> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Class<?>, List<Object>> groups = new LinkedHashMap<>();
+        for (Object info : batch) {
+            groups.computeIfAbsent(info.getClass(), k -> new ArrayList<>()).add(info);
+        }
+        batch.clear();
+
+        groups.forEach((clz, infos) -> {
+            try {
+                sink.write(StatisticEntity.of(clz), infos);
+            } catch (Exception e) {
+                failed.addAndGet(infos.size());
+                log.error("Statistic write {} infos of {} error: {}", infos.size(), clz.getSimpleName(), e.getMessage(), e);
+            }
+        });
+    }
+}
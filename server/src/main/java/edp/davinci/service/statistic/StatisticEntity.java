@@ -0,0 +1,152 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.statistic;
+
+import edp.core.exception.ServerException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 埋点实体的字段描述，按类缓存表名及 getter，避免每次写入都通过反射扫描方法
+ */
+public final class StatisticEntity {
+
+    private static final Map<Class<?>, StatisticEntity> ENTITIES = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+
+    private final String tableName;
+
+    private final String[] fieldNames;
+
+    private final Method[] getters;
+
+    private StatisticEntity(Class<?> type) {
+        this.type = type;
+        this.tableName = getTableName4Info(type);
+
+        List<String> names = new ArrayList<>();
+        List<Method> methods = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            String name = field.getName();
+            try {
+                methods.add(type.getMethod("get" + name.substring(0, 1).toUpperCase() + name.substring(1)));
+                names.add(name);
+            } catch (NoSuchMethodException e) {
+                // ignore
+            }
+        }
+        this.fieldNames = names.toArray(new String[0]);
+        this.getters = methods.toArray(new Method[0]);
+    }
+
+    public static StatisticEntity of(Class<?> type) {
+        return ENTITIES.computeIfAbsent(type, StatisticEntity::new);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * 按字段声明顺序转换为 Map
+     *
+     * @param info
+     * @return
+     */
+    public Map<String, Object> toMap(Object info) {
+        Map<String, Object> map = new LinkedHashMap<>(fieldNames.length * 2);
+        try {
+            for (int i = 0; i < getters.length; i++) {
+                map.put(fieldNames[i], getters[i].invoke(info));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new ServerException("Convert statistic info error: " + e.getMessage());
+        }
+        return map;
+    }
+
+    /**
+     * 读取单个字段，字段不存在时返回 null
+     *
+     * @param info
+     * @param fieldName
+     * @return
+     */
+    public Object getFieldValue(Object info, String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                try {
+                    return getters[i].invoke(info);
+                } catch (ReflectiveOperationException e) {
+                    throw new ServerException("Convert statistic info error: " + e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    public List<Map<String, Object>> toMaps(List<Object> infos) {
+        List<Map<String, Object>> list = new ArrayList<>(infos.size());
+        for (Object info : infos) {
+            list.add(toMap(info));
+        }
+        return list;
+    }
+
+    private static String getTableName4Info(Class<?> clz) {
+        String className = clz.getSimpleName();
+        int index = className.indexOf("Info");
+        return humpToUnderline(index > 0 ? className.substring(0, index) : className);
+    }
+
+    public static String humpToUnderline(String para) {
+        StringBuilder sb = new StringBuilder(para);
+        boolean firstNumberUpper = true;
+        int temp = 0;//定位
+        for (int i = 1; i < para.length(); i++) {
+            if (Character.isUpperCase(para.charAt(i))) {
+                sb.insert(i + temp, "_");
+                temp += 1;
+            }
+            if (firstNumberUpper && Character.isDigit(para.charAt(i))) {
+                sb.insert(i + temp, "_");
+                temp += 1;
+                firstNumberUpper = false;
+            }
+        }
+        return sb.toString().toLowerCase();
+    }
+}
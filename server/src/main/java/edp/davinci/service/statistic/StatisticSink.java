@@ -0,0 +1,38 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.service.statistic;
+
+import java.util.List;
+
+/**
+ * 埋点数据的落地方式，由 StatisticBuffer 在后台线程中按实体类型分批调用
+ */
+public interface StatisticSink {
+
+    /**
+     * 写入同一类型的一批埋点数据
+     *
+     * @param entity
+     * @param infos
+     * @throws Exception
+     */
+    void write(StatisticEntity entity, List<Object> infos) throws Exception;
+
+}
@@ -0,0 +1,89 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.core.enums;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaginationDialectEnumTest {
+
+    @Test
+    public void detectsTopLevelOrderBy() {
+        assertTrue(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t ORDER BY a"));
+        assertTrue(PaginationDialectEnum.hasTopLevelOrderBy("select * from t order   by a desc"));
+        assertTrue(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t ORDER\n BY a"));
+        assertTrue(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t ORDER\t/* sort */ BY a"));
+        assertTrue(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM (SELECT a FROM t) x ORDER BY a"));
+        assertTrue(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t WHERE b = 'x' ORDER BY a"));
+    }
+
+    @Test
+    public void ignoresNestedQuotedAndCommentedOrderBy() {
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM (SELECT a FROM t ORDER BY a) x"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT ROW_NUMBER() OVER (ORDER BY a) rn FROM t"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT 'order by' AS s FROM t"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT 'it''s ) order by' AS s FROM t"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT \"order by\" FROM t"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT [order by] FROM t"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t -- order by a"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT * FROM t /* order by a */"));
+        assertFalse(PaginationDialectEnum.hasTopLevelOrderBy("SELECT sort_order, by_name FROM t"));
+    }
+
+    @Test
+    public void paginatesByDialect() {
+        String sql = "SELECT * FROM t";
+        assertEquals("SELECT * FROM t LIMIT 10 OFFSET 20", PaginationDialectEnum.LIMIT_OFFSET.paginate(sql, 20, 10));
+        assertEquals("SELECT * FROM t LIMIT 10", PaginationDialectEnum.LIMIT_OFFSET.paginate(sql, 0, 10));
+        assertEquals("SELECT * FROM t LIMIT 20, 10", PaginationDialectEnum.LIMIT_COMMA.paginate(sql, 20, 10));
+        assertEquals("SELECT * FROM t OFFSET 20 LIMIT 10", PaginationDialectEnum.OFFSET_LIMIT.paginate(sql, 20, 10));
+        assertEquals("SELECT * FROM t OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", PaginationDialectEnum.OFFSET_FETCH.paginate(sql, 20, 10));
+        assertEquals("SELECT * FROM t FETCH FIRST 10 ROWS ONLY", PaginationDialectEnum.OFFSET_FETCH.paginate(sql, 0, 10));
+        assertEquals("SELECT * FROM (SELECT DAVINCI_P.*, ROWNUM DAVINCI_RN FROM (SELECT * FROM t) DAVINCI_P WHERE ROWNUM <= 30) WHERE DAVINCI_RN > 20",
+                PaginationDialectEnum.ROWNUM.paginate(sql, 20, 10));
+        assertNull(PaginationDialectEnum.NONE.paginate(sql, 20, 10));
+    }
+
+    @Test
+    public void orderedDialectsFollowOrderBy() {
+        String unordered = "SELECT * FROM t";
+        String ordered = "SELECT * FROM t ORDER\n BY a";
+
+        assertEquals("SELECT TOP 10 * FROM (SELECT * FROM t) DAVINCI_P", PaginationDialectEnum.TOP.paginate(unordered, 0, 10));
+        assertEquals("SELECT * FROM t ORDER BY (SELECT NULL) OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY",
+                PaginationDialectEnum.TOP.paginate(unordered, 20, 10));
+        assertEquals(ordered + " OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY", PaginationDialectEnum.TOP.paginate(ordered, 0, 10));
+
+        assertEquals(unordered + " LIMIT 10", PaginationDialectEnum.ORDERED_LIMIT_OFFSET.paginate(unordered, 0, 10));
+        assertNull(PaginationDialectEnum.ORDERED_LIMIT_OFFSET.paginate(unordered, 20, 10));
+        assertEquals(ordered + " LIMIT 10 OFFSET 20", PaginationDialectEnum.ORDERED_LIMIT_OFFSET.paginate(ordered, 20, 10));
+    }
+
+    @Test
+    public void resolvesDialect() {
+        assertEquals(PaginationDialectEnum.LIMIT_COMMA, PaginationDialectEnum.getPaginationDialect(DataTypeEnum.MYSQL));
+        assertEquals(PaginationDialectEnum.TOP, PaginationDialectEnum.getPaginationDialect(DataTypeEnum.SQLSERVER));
+        assertEquals(PaginationDialectEnum.NONE, PaginationDialectEnum.getPaginationDialect((DataTypeEnum) null));
+        assertEquals(PaginationDialectEnum.OFFSET_FETCH, PaginationDialectEnum.getPaginationDialect(" OFFSET_FETCH "));
+        assertEquals(PaginationDialectEnum.NONE, PaginationDialectEnum.getPaginationDialect("unknown"));
+    }
+}
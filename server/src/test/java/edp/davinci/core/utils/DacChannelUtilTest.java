@@ -0,0 +1,169 @@
+/*
+ * <<
+ *  Davinci
+ *  ==
+ *  Copyright (C) 2016 - 2019 EDP
+ *  ==
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  >>
+ *
+ */
+
+package edp.davinci.core.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import edp.davinci.model.DacChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DacChannelUtilTest {
+
+    private static final String CHANNEL = "dac";
+
+    private static final String EMAIL = "user@davinci.com";
+
+    private static final String FAIL_BIZ = "500";
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    private AuthVarExecutor authVarExecutor;
+
+    private DacChannelUtil dacChannelUtil;
+
+    @Before
+    public void setUp() throws Exception {
+        // 模拟权限渠道：/dac/bizs/{bizId}/data，bizId 为 500 时返回服务端错误
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/" + CHANNEL, exchange -> {
+            String[] paths = exchange.getRequestURI().getPath().split("/");
+            String bizId = paths[3];
+            requests.computeIfAbsent(bizId, k -> new AtomicInteger()).incrementAndGet();
+
+            int status = FAIL_BIZ.equals(bizId) ? 500 : 200;
+            byte[] body = ("{\"payload\":[\"" + bizId + "-a\",\"" + bizId + "-b\"]}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        authVarExecutor = new AuthVarExecutor();
+        ReflectionTestUtils.setField(authVarExecutor, "threads", 4);
+        ReflectionTestUtils.setField(authVarExecutor, "queueSize", 16);
+        ReflectionTestUtils.setField(authVarExecutor, "timeoutMillis", 10000L);
+        authVarExecutor.init();
+
+        dacChannelUtil = newDacChannelUtil(10L);
+    }
+
+    @After
+    public void tearDown() {
+        DacChannelUtil.dacMap.clear();
+        authVarExecutor.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    public void batchFetchesDistinctBizOnce() {
+        Map<String, List<String>> bizIds = new HashMap<>();
+        bizIds.put(CHANNEL, Arrays.asList("1", "2", "1"));
+
+        Map<String, Map<String, List<Object>>> data = dacChannelUtil.getData(bizIds, EMAIL);
+
+        assertEquals(Arrays.asList("1-a", "1-b"), data.get(CHANNEL).get("1"));
+        assertEquals(Arrays.asList("2-a", "2-b"), data.get(CHANNEL).get("2"));
+        assertEquals(1, requests.get("1").get());
+        assertEquals(1, requests.get("2").get());
+        assertEquals(2L, dacChannelUtil.getStats().get("remoteCalls"));
+    }
+
+    @Test
+    public void cachedDataIsNotFetchedAgain() {
+        dacChannelUtil.getData(CHANNEL, "1", EMAIL);
+        List<Object> data = dacChannelUtil.getData(CHANNEL, "1", EMAIL);
+
+        assertEquals(Arrays.asList("1-a", "1-b"), data);
+        assertEquals(1, requests.get("1").get());
+
+        Map<String, Object> stats = dacChannelUtil.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(1L, stats.get("remoteCalls"));
+    }
+
+    @Test
+    public void failedLookupIsNegativeCached() {
+        assertNull(dacChannelUtil.getData(CHANNEL, FAIL_BIZ, EMAIL));
+        assertNull(dacChannelUtil.getData(CHANNEL, FAIL_BIZ, EMAIL));
+
+        assertEquals(1, requests.get(FAIL_BIZ).get());
+
+        Map<String, Object> stats = dacChannelUtil.getStats();
+        assertEquals(1L, stats.get("negativeHits"));
+        assertEquals(1L, stats.get("remoteErrors"));
+    }
+
+    @Test
+    public void failedLookupIsRetriedWithoutNegativeTtl() {
+        DacChannelUtil.dacMap.clear();
+        dacChannelUtil = newDacChannelUtil(0L);
+
+        assertNull(dacChannelUtil.getData(CHANNEL, FAIL_BIZ, EMAIL));
+        assertNull(dacChannelUtil.getData(CHANNEL, FAIL_BIZ, EMAIL));
+
+        assertEquals(2, requests.get(FAIL_BIZ).get());
+        assertEquals(0L, dacChannelUtil.getStats().get("negativeHits"));
+    }
+
+    @Test
+    public void unknownChannelIsNotRequested() {
+        Map<String, List<String>> bizIds = new HashMap<>();
+        bizIds.put("unknown", Collections.singletonList("1"));
+
+        Map<String, Map<String, List<Object>>> data = dacChannelUtil.getData(bizIds, EMAIL);
+
+        assertNull(data.get("unknown").get("1"));
+        assertNull(dacChannelUtil.getData(CHANNEL, "1", null));
+        assertTrue(requests.isEmpty());
+    }
+
+    private DacChannelUtil newDacChannelUtil(long negativeTtlSeconds) {
+        DacChannel channel = new DacChannel();
+        channel.setName(CHANNEL);
+        channel.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/" + CHANNEL);
+        channel.setAuthCode("code");
+
+        DacChannelUtil util = new DacChannelUtil();
+        ReflectionTestUtils.setField(util, "restTemplate", new RestTemplate());
+        ReflectionTestUtils.setField(util, "authVarExecutor", authVarExecutor);
+        util.setChannels(Collections.singletonList(channel));
+        util.setCacheTtlSeconds(60L);
+        util.setNegativeTtlSeconds(negativeTtlSeconds);
+        util.loadDacMap();
+        return util;
+    }
+}